@@ -0,0 +1,169 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Объединяет поиск по отдельным ключам в один запрос со списком ключей в {@code IN}. Ключи накапливаются
+ * до вызова {@link #dispatch()}, до достижения {@link #maxBatchSize(int)} или, если задан планировщик
+ * (см. {@link #window(ScheduledExecutorService, long, TimeUnit)}), до истечения окна после первого ключа.
+ * Строки результата раскладываются по ключам с помощью {@code keyMapper}.
+ * <pre>
+ *     BatchLoader&lt;Integer, User&gt; users = factory.batchLoader("SELECT * FROM users WHERE id IN (:ids)", "ids",
+ *                                                              rs -&gt; rs.getInt("id"), User::new);
+ *     CompletableFuture&lt;ResultList&lt;User&gt;&gt; user = users.load(42);
+ * </pre>
+ */
+public class BatchLoader<K, V> {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final PreparedTemplate preparedTemplate;
+    private final String placeholderName;
+    private final SQLTemplate.Mapper<? extends K> keyMapper;
+    private final SQLTemplate.Mapper<? extends V> mapper;
+    private final Lock lock = new ReentrantLock();
+    private Map<K, CompletableFuture<ResultList<V>>> pending = new LinkedHashMap<>();
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private ScheduledExecutorService scheduler;
+    private long windowNanos;
+
+    public BatchLoader(@Nonnull PreparedTemplate preparedTemplate, @Nonnull String placeholderName,
+                       @Nonnull SQLTemplate.Mapper<? extends K> keyMapper,
+                       @Nonnull SQLTemplate.Mapper<? extends V> mapper) {
+        if (preparedTemplate.slotOf(placeholderName) < 0) {
+            throw new IllegalArgumentException("Placeholder with name '" + placeholderName + "' is not used in template");
+        }
+        this.preparedTemplate = preparedTemplate;
+        this.placeholderName = placeholderName;
+        this.keyMapper = keyMapper;
+        this.mapper = mapper;
+    }
+
+    public BatchLoader<K, V> maxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be equals or greater than 1, got " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Автоматически выполняет накопленные ключи на {@code scheduler} через {@code window} после первого из них
+     */
+    public BatchLoader<K, V> window(@Nonnull ScheduledExecutorService scheduler, long window, @Nonnull TimeUnit unit) {
+        this.scheduler = scheduler;
+        this.windowNanos = unit.toNanos(window);
+        return this;
+    }
+
+    /**
+     * Ставит ключ в очередь; одинаковые ключи одной пачки получают один и тот же результат.
+     * Результат — неизменяемый список строк с этим ключом, возможно пустой.
+     */
+    public @Nonnull CompletableFuture<ResultList<V>> load(@Nonnull K key) {
+        CompletableFuture<ResultList<V>> future;
+        boolean first;
+        boolean full;
+        lock.lock();
+        try {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            first = pending.isEmpty();
+            pending.put(key, future);
+            full = pending.size() >= maxBatchSize;
+        }
+        finally {
+            lock.unlock();
+        }
+        if (full) {
+            if (scheduler != null) {
+                scheduler.execute(this::dispatch);
+            }
+            else {
+                dispatch();
+            }
+        }
+        else if (first && scheduler != null) {
+            scheduler.schedule(this::dispatch, windowNanos, TimeUnit.NANOSECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Загружает строки для всех ключей, выполняя накопленную пачку на текущем потоке
+     */
+    public @Nonnull Map<K, ResultList<V>> loadMany(@Nonnull Collection<? extends K> keys) throws SQLException {
+        Map<K, CompletableFuture<ResultList<V>>> futures = new LinkedHashMap<>();
+        for (K key : keys) {
+            futures.put(key, load(key));
+        }
+        dispatch();
+        Map<K, ResultList<V>> result = new LinkedHashMap<>();
+        for (Map.Entry<K, CompletableFuture<ResultList<V>>> entry : futures.entrySet()) {
+            result.put(entry.getKey(), SQLTemplate.await(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Выполняет накопленные ключи на текущем потоке пачками не более {@link #maxBatchSize(int)}
+     */
+    public void dispatch() {
+        Map<K, CompletableFuture<ResultList<V>>> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        finally {
+            lock.unlock();
+        }
+        List<K> keys = new ArrayList<>(batch.keySet());
+        for (int from = 0; from < keys.size(); from += maxBatchSize) {
+            List<K> chunk = keys.subList(from, Math.min(keys.size(), from + maxBatchSize));
+            try {
+                Map<K, List<V>> rows = preparedTemplate.bind()
+                                                       .parameter(placeholderName, chunk)
+                                                       .executeQuery(new KeyAggregator());
+                for (K key : chunk) {
+                    List<V> keyRows = rows.get(key);
+                    batch.get(key).complete(keyRows == null ? ResultCollections.emptyList()
+                                                            : ResultCollections.unmodifiableList(
+                                                                    new ResultArrayList<>(null, null, null, keyRows)));
+                }
+            }
+            catch (Throwable ex) {
+                for (K key : chunk) {
+                    batch.get(key).completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private class KeyAggregator extends SQLTemplate.AbstractSQLRowAggregator<Map<K, List<V>>> {
+        private final Map<K, List<V>> rows = new HashMap<>();
+
+        @Override
+        public Map<K, List<V>> processRow(@Nonnull ExtendedResultSet resultSet) throws Exception {
+            rows.computeIfAbsent(keyMapper.map(resultSet), k -> new ArrayList<>()).add(mapper.map(resultSet));
+            return null;
+        }
+
+        @Override
+        public @Nonnull Map<K, List<V>> getResult() throws Exception {
+            return rows;
+        }
+    }
+}
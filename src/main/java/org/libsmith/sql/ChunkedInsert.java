@@ -0,0 +1,304 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Многострочная вставка, разбитая на куски фиксированного размера. Каждый кусок связывается с плейсхолдером
+ * шаблона как {@link SQLInsertValues}; все полные куски дают один и тот же текст запроса и выполняются
+ * на переиспользуемом statement'е через {@link SQLTemplate#executeBatch(Iterable, int)}.
+ * Остальные плейсхолдеры шаблона задаются через {@link #parameter(String, Object)}.
+ * <pre>
+ *     factory.chunkedInsert("INSERT INTO t (a, b) VALUES (:values) ON DUPLICATE KEY UPDATE b = :now", "values")
+ *            .parameter("now", now)
+ *            .execute(rows);
+ * </pre>
+ */
+public class ChunkedInsert {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final int DEFAULT_MAX_PARAMETERS = 65535;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    private final PreparedTemplate preparedTemplate;
+    private final String placeholderName;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int maxParameters = DEFAULT_MAX_PARAMETERS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private String whitespace = "\n    ";
+    private boolean inside = true;
+    private Executor executor;
+    private int parallelism = 1;
+
+    public ChunkedInsert(@Nonnull PreparedTemplate preparedTemplate, @Nonnull String placeholderName) {
+        if (preparedTemplate.slotOf(placeholderName) < 0) {
+            throw new IllegalArgumentException("Placeholder with name '" + placeholderName + "' is not used in template");
+        }
+        this.preparedTemplate = preparedTemplate;
+        this.placeholderName = placeholderName;
+    }
+
+    public ChunkedInsert chunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be equals or greater than 1, got " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Количество кусков, отправляемых в одном JDBC batch
+     */
+    public ChunkedInsert batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be equals or greater than 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Значение остальных плейсхолдеров шаблона, общее для всех кусков
+     */
+    public ChunkedInsert parameter(@Nonnull String parameterName, Object value) {
+        if (preparedTemplate.slotOf(parameterName) < 0) {
+            throw new IllegalArgumentException("Placeholder with name '" + parameterName + "' is not used in template");
+        }
+        if (parameterName.equals(placeholderName)) {
+            throw new IllegalArgumentException("Placeholder with name '" + parameterName + "' is bound to chunks");
+        }
+        parameters.put(parameterName, value);
+        return this;
+    }
+
+    /**
+     * Ограничение количества параметров в одном запросе, включая параметры {@link #parameter(String, Object)};
+     * размер куска уменьшается так, чтобы его не превышать. Значение строки, являющееся {@link SQLFragment},
+     * учитывается количеством своих параметров.
+     */
+    public ChunkedInsert maxParameters(int maxParameters) {
+        if (maxParameters < 1) {
+            throw new IllegalArgumentException("Max parameters must be equals or greater than 1, got " + maxParameters);
+        }
+        this.maxParameters = maxParameters;
+        return this;
+    }
+
+    /**
+     * Форматирование кусков, см. {@link SQLInsertValues#SQLInsertValues(String, boolean)}
+     */
+    public ChunkedInsert format(@Nonnull String whitespace, boolean inside) {
+        this.whitespace = whitespace;
+        this.inside = inside;
+        return this;
+    }
+
+    /**
+     * Выполняет куски параллельно на {@code parallelism} соединениях; каждый поток выполняет свою
+     * последовательность кусков на своем соединении
+     */
+    public ChunkedInsert parallel(@Nonnull Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be equals or greater than 1, got " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @return суммарное количество вставленных строк по данным драйвера
+     */
+    public long execute(@Nonnull Iterable<Object[]> rows) throws SQLException {
+        ChunkIterator chunks = new ChunkIterator(rows.iterator(), Math.max(1, maxParameters - countParameters()));
+        if (executor == null || parallelism == 1) {
+            return executeChunks(chunks);
+        }
+        List<FutureTask<Long>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            FutureTask<Long> task = new FutureTask<>(() -> {
+                try {
+                    return executeChunks(chunks);
+                }
+                catch (SQLException | RuntimeException | Error ex) {
+                    chunks.abort();
+                    throw ex;
+                }
+            });
+            try {
+                executor.execute(task);
+            }
+            catch (RuntimeException ex) {
+                chunks.abort();
+                for (FutureTask<Long> submitted : tasks) {
+                    submitted.cancel(false);
+                }
+                throw ex;
+            }
+            tasks.add(task);
+        }
+        long total = 0;
+        Throwable failure = null;
+        for (FutureTask<Long> task : tasks) {
+            try {
+                total += task.get();
+            }
+            catch (ExecutionException ex) {
+                chunks.abort();
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            }
+            catch (InterruptedException ex) {
+                chunks.abort();
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        else if (failure != null) {
+            throw new SQLException(failure);
+        }
+        return total;
+    }
+
+    private long executeChunks(ChunkIterator chunks) throws SQLException {
+        Iterable<Map<String, ?>> boundChunks = () -> new Iterator<Map<String, ?>>() {
+            private List<Object[]> next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = chunks.nextChunk();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Map<String, ?> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                SQLInsertValues insertValues = new SQLInsertValues(whitespace, inside);
+                for (Object[] row : next) {
+                    insertValues.values(row);
+                }
+                next = null;
+                return Collections.singletonMap(placeholderName, insertValues);
+            }
+        };
+        SQLTemplate template = preparedTemplate.bind();
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            template.parameter(entry.getKey(), entry.getValue());
+        }
+        long total = 0;
+        for (int count : template.executeBatch(boundChunks, batchSize)) {
+            if (count != Statement.SUCCESS_NO_INFO && count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Количество параметров запроса, которые дают значения {@link #parameter(String, Object)}
+     * во всех местах их использования в шаблоне
+     */
+    private int countParameters() {
+        int count = 0;
+        for (int p = 0, placeholderCount = preparedTemplate.getCompiledTemplate().getPlaceholderCount();
+             p < placeholderCount; p++) {
+            String name = preparedTemplate.getSlotName(preparedTemplate.getPlaceholderSlot(p));
+            if (parameters.containsKey(name)) {
+                count += countParameters(parameters.get(name));
+            }
+        }
+        return count;
+    }
+
+    private int countParameters(Object value) {
+        if (value instanceof SQLFragment) {
+            return ((SQLFragment) value).getParameters().size();
+        }
+        if (value instanceof Iterable) {
+            int count = 0;
+            int size = 0;
+            for (Object element : (Iterable<?>) value) {
+                count += countParameters(element);
+                size++;
+            }
+            boolean bucketing = preparedTemplate.getFactory().getInListBucketing() != null;
+            return bucketing ? count + InListBucketing.bucketSize(size) - size : count;
+        }
+        return 1;
+    }
+
+    private static int countRowParameters(Object[] row) {
+        int count = 0;
+        for (Object value : row) {
+            count += value instanceof SQLFragment ? ((SQLFragment) value).getParameters().size() : 1;
+        }
+        return count;
+    }
+
+    private class ChunkIterator {
+        private final Iterator<Object[]> rows;
+        private final int maxChunkParameters;
+        private final Lock lock = new ReentrantLock();
+        private Object[] pending;
+        private volatile boolean aborted;
+
+        private ChunkIterator(Iterator<Object[]> rows, int maxChunkParameters) {
+            this.rows = rows;
+            this.maxChunkParameters = maxChunkParameters;
+        }
+
+        @Nullable List<Object[]> nextChunk() {
+            lock.lock();
+            try {
+                if (aborted || pending == null && !rows.hasNext()) {
+                    return null;
+                }
+                List<Object[]> chunk = new ArrayList<>();
+                int chunkParameters = 0;
+                while (chunk.size() < chunkSize && (pending != null || rows.hasNext())) {
+                    Object[] row = pending != null ? pending : rows.next();
+                    pending = null;
+                    int rowParameters = countRowParameters(row);
+                    if (!chunk.isEmpty() && chunkParameters + rowParameters > maxChunkParameters) {
+                        pending = row;
+                        break;
+                    }
+                    chunk.add(row);
+                    chunkParameters += rowParameters;
+                }
+                return chunk;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void abort() {
+            aborted = true;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Результат запроса, хранящий каждую колонку в отдельном типизированном списке: целые и вещественные колонки —
+ * в {@link IntResultList}, {@link LongResultList} и {@link DoubleResultList} с битовой картой {@code NULL},
+ * остальные — в списке объектов. Метки колонок хранятся один раз. Строки доступны как легковесные
+ * представления {@link Row} поверх колонок.
+ *
+ * @see SQLTemplate#executeQueryColumnar()
+ */
+public class ColumnarResult extends AbstractList<ColumnarResult.Row> implements ResultList<ColumnarResult.Row> {
+    private final String[] labels;
+    private final int[] types;
+    private final List<?>[] columns;
+    private final Map<String, Integer> columnIndexes;
+    private final Integer foundRows;
+    private final FoundRowsAccuracy foundRowsAccuracy;
+    private final Long offset;
+    private final Integer limit;
+    private int size;
+
+    ColumnarResult(@Nonnull ExtendedResultSet resultSet, Integer foundRows, FoundRowsAccuracy foundRowsAccuracy,
+                   Long offset, Integer limit) throws SQLException {
+        int columnCount = resultSet.getColumnCount();
+        this.labels = new String[columnCount];
+        this.types = new int[columnCount];
+        this.columns = new List<?>[columnCount];
+        this.columnIndexes = new HashMap<>(columnCount * 4 / 3 + 1);
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int i = columnCount; i >= 1; i--) {
+            labels[i - 1] = resultSet.getColumnLabel(i);
+            types[i - 1] = resultSet.getColumnType(i);
+            columns[i - 1] = newColumn(types[i - 1], metaData.isSigned(i), limit);
+            columnIndexes.put(labels[i - 1].toLowerCase(Locale.ROOT), i);
+        }
+        this.foundRows = foundRows;
+        this.foundRowsAccuracy = foundRowsAccuracy;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Беззнаковый {@code INTEGER} хранится в {@code long[]}, беззнаковый {@code BIGINT} — в списке объектов
+     * (драйвер возвращает {@link java.math.BigInteger}), так как их значения не помещаются в знаковый тип той же ширины
+     */
+    private static List<?> newColumn(int type, boolean signed, Integer limit) {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                return new IntResultList(null, null, null, limit);
+            case Types.INTEGER:
+                return signed ? new IntResultList(null, null, null, limit) : new LongResultList(null, null, null, limit);
+            case Types.BIGINT:
+                return signed ? new LongResultList(null, null, null, limit) : newObjectColumn(limit);
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleResultList(null, null, null, limit);
+            default:
+                return newObjectColumn(limit);
+        }
+    }
+
+    private static List<Object> newObjectColumn(Integer limit) {
+        return new ArrayList<>(limit == null ? 16 : Math.min(limit, 1 << 16));
+    }
+
+    /**
+     * Дочитывает текущую строку {@code resultSet} в колонки
+     */
+    void addRow(@Nonnull ExtendedResultSet resultSet) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            List<?> column = columns[i];
+            if (column instanceof PrimitiveResultList) {
+                ((PrimitiveResultList<?>) column).addFrom(resultSet, i + 1);
+            }
+            else {
+                @SuppressWarnings("unchecked")
+                List<Object> objectColumn = (List<Object>) column;
+                objectColumn.add(resultSet.getObject(i + 1));
+            }
+        }
+        size++;
+        modCount++;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String getColumnLabel(int columnIndex) {
+        return labels[columnIndex - 1];
+    }
+
+    /**
+     * Тип колонки, см. {@link Types}
+     */
+    public int getColumnType(int columnIndex) {
+        return types[columnIndex - 1];
+    }
+
+    /**
+     * Индекс колонки по метке без учета регистра
+     *
+     * @throws IllegalArgumentException если колонки с такой меткой нет
+     */
+    public int findColumn(@Nonnull String columnLabel) {
+        Integer columnIndex = columnIndexes.get(columnLabel.toLowerCase(Locale.ROOT));
+        if (columnIndex == null) {
+            throw new IllegalArgumentException("Unknown column '" + columnLabel + "'");
+        }
+        return columnIndex;
+    }
+
+    /**
+     * Неизменяемое представление колонки; для целых и вещественных колонок это {@link IntResultList},
+     * {@link LongResultList} или {@link DoubleResultList}
+     */
+    public List<?> getColumn(int columnIndex) {
+        return Collections.unmodifiableList(columns[columnIndex - 1]);
+    }
+
+    public boolean isNull(int rowIndex, int columnIndex) {
+        List<?> column = columns[columnIndex - 1];
+        return column instanceof PrimitiveResultList ? ((PrimitiveResultList<?>) column).isNull(rowIndex)
+                                                     : column.get(rowIndex) == null;
+    }
+
+    public @Nullable Object getObject(int rowIndex, int columnIndex) {
+        return columns[columnIndex - 1].get(rowIndex);
+    }
+
+    /**
+     * Значение колонки как {@code int}; {@code NULL} возвращается как 0
+     */
+    public int getInt(int rowIndex, int columnIndex) {
+        List<?> column = columns[columnIndex - 1];
+        if (column instanceof IntResultList) {
+            return ((IntResultList) column).getInt(rowIndex);
+        }
+        Number value = (Number) column.get(rowIndex);
+        return value == null ? 0 : value.intValue();
+    }
+
+    /**
+     * Значение колонки как {@code long}; {@code NULL} возвращается как 0
+     */
+    public long getLong(int rowIndex, int columnIndex) {
+        List<?> column = columns[columnIndex - 1];
+        if (column instanceof LongResultList) {
+            return ((LongResultList) column).getLong(rowIndex);
+        }
+        if (column instanceof IntResultList) {
+            return ((IntResultList) column).getInt(rowIndex);
+        }
+        Number value = (Number) column.get(rowIndex);
+        return value == null ? 0 : value.longValue();
+    }
+
+    /**
+     * Значение колонки как {@code double}; {@code NULL} возвращается как 0
+     */
+    public double getDouble(int rowIndex, int columnIndex) {
+        List<?> column = columns[columnIndex - 1];
+        if (column instanceof DoubleResultList) {
+            return ((DoubleResultList) column).getDouble(rowIndex);
+        }
+        Number value = (Number) column.get(rowIndex);
+        return value == null ? 0 : value.doubleValue();
+    }
+
+    @Override
+    public Row get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Row(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Integer getLimit() {
+        return limit;
+    }
+
+    @Override
+    public Integer getFoundRows() {
+        return foundRows;
+    }
+
+    @Override
+    public FoundRowsAccuracy getFoundRowsAccuracy() {
+        return foundRows == null ? null : foundRowsAccuracy;
+    }
+
+    /**
+     * Представление строки поверх колонок {@link ColumnarResult}; не хранит значений
+     */
+    public final class Row {
+        private final int rowIndex;
+
+        private Row(int rowIndex) {
+            this.rowIndex = rowIndex;
+        }
+
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        public boolean isNull(int columnIndex) {
+            return ColumnarResult.this.isNull(rowIndex, columnIndex);
+        }
+
+        public @Nullable Object getObject(int columnIndex) {
+            return ColumnarResult.this.getObject(rowIndex, columnIndex);
+        }
+
+        public @Nullable Object getObject(@Nonnull String columnLabel) {
+            return getObject(findColumn(columnLabel));
+        }
+
+        public int getInt(int columnIndex) {
+            return ColumnarResult.this.getInt(rowIndex, columnIndex);
+        }
+
+        public int getInt(@Nonnull String columnLabel) {
+            return getInt(findColumn(columnLabel));
+        }
+
+        public long getLong(int columnIndex) {
+            return ColumnarResult.this.getLong(rowIndex, columnIndex);
+        }
+
+        public long getLong(@Nonnull String columnLabel) {
+            return getLong(findColumn(columnLabel));
+        }
+
+        public double getDouble(int columnIndex) {
+            return ColumnarResult.this.getDouble(rowIndex, columnIndex);
+        }
+
+        public double getDouble(@Nonnull String columnLabel) {
+            return getDouble(findColumn(columnLabel));
+        }
+
+        /**
+         * Копия строки в виде, совместимом с {@link SQLMappers#ROW_TO_MAP}
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> row = new HashMap<>(labels.length * 4 / 3 + 1);
+            for (int i = 0; i < labels.length; i++) {
+                row.put(labels[i], getObject(i + 1));
+            }
+            return row;
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
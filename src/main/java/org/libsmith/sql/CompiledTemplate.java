@@ -0,0 +1,91 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Шаблон запроса, один раз разобранный на литеральные сегменты и именованные плейсхолдеры.
+ * Экземпляры неизменяемы и могут разделяться между потоками.
+ */
+public final class CompiledTemplate {
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\B\\\\?:(\\w+)");
+
+    private final String template;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalsLength;
+
+    private CompiledTemplate(String template, String[] literals, String[] placeholders) {
+        this.template = template;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+    }
+
+    public static @Nonnull CompiledTemplate compile(@Nonnull String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(template);
+        StringBuilder sb = new StringBuilder();
+        int position = 0;
+        while (matcher.find()) {
+            sb.append(template, position, matcher.start());
+            position = matcher.end();
+            if (matcher.group().startsWith("\\")) {
+                sb.append(":").append(matcher.group(1));
+            }
+            else {
+                literals.add(sb.toString());
+                placeholders.add(matcher.group(1));
+                sb.setLength(0);
+            }
+        }
+        sb.append(template, position, template.length());
+        literals.add(sb.toString());
+        return new CompiledTemplate(template,
+                                    literals.toArray(new String[literals.size()]),
+                                    placeholders.toArray(new String[placeholders.size()]));
+    }
+
+    public @Nonnull String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Количество плейсхолдеров; литеральных сегментов всегда на один больше
+     */
+    public int getPlaceholderCount() {
+        return placeholders.length;
+    }
+
+    public @Nonnull String getPlaceholder(int index) {
+        return placeholders[index];
+    }
+
+    /**
+     * Литеральный сегмент, предшествующий плейсхолдеру с тем же индексом, либо хвост шаблона
+     * при {@code index == getPlaceholderCount()}
+     */
+    public @Nonnull String getLiteral(int index) {
+        return literals[index];
+    }
+
+    /**
+     * Суммарная длина литеральных сегментов, используется для оценки размера раскрытого запроса
+     */
+    public int getLiteralsLength() {
+        return literalsLength;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,122 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Соединение, полученное на время одного выполнения шаблона. Закрытие восстанавливает измененные
+ * на время выполнения свойства соединения и закрывает его, если соединение не принадлежит {@link SQLSession}.
+ */
+class ConnectionLease implements AutoCloseable {
+    private final Connection connection;
+    private final boolean restoreReadOnly;
+    private final Semaphore permits;
+    private final boolean owned;
+    private boolean closed;
+
+    private ConnectionLease(Connection connection, boolean restoreReadOnly, Semaphore permits, boolean owned) {
+        this.connection = connection;
+        this.restoreReadOnly = restoreReadOnly;
+        this.permits = permits;
+        this.owned = owned;
+    }
+
+    /**
+     * Аренда уже открытого соединения, которое не закрывается при закрытии аренды
+     */
+    static @Nonnull ConnectionLease shared(@Nonnull Connection connection, boolean readOnly) throws SQLException {
+        boolean restoreReadOnly = readOnly && !connection.isReadOnly();
+        if (restoreReadOnly) {
+            connection.setReadOnly(true);
+        }
+        return new ConnectionLease(connection, restoreReadOnly, null, false);
+    }
+
+    static @Nonnull ConnectionLease open(@Nonnull DataSource dataSource, boolean readOnly) throws SQLException {
+        return open(dataSource, readOnly, null);
+    }
+
+    /**
+     * @param permits разрешения на открытие соединения, захватываемые до {@link DataSource#getConnection()}
+     *                и освобождаемые при закрытии
+     */
+    static @Nonnull ConnectionLease open(@Nonnull DataSource dataSource, boolean readOnly,
+                                         @Nullable Semaphore permits) throws SQLException {
+        if (permits != null) {
+            try {
+                permits.acquire();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for connection permit", ex);
+            }
+        }
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        }
+        catch (SQLException | RuntimeException | Error ex) {
+            if (permits != null) {
+                permits.release();
+            }
+            throw ex;
+        }
+        boolean restoreReadOnly = false;
+        if (readOnly) {
+            try {
+                if (!connection.isReadOnly()) {
+                    connection.setReadOnly(true);
+                    restoreReadOnly = true;
+                }
+            }
+            catch (SQLException | RuntimeException ex) {
+                try {
+                    connection.close();
+                }
+                catch (SQLException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+                finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+                throw ex;
+            }
+        }
+        return new ConnectionLease(connection, restoreReadOnly, permits, true);
+    }
+
+    @Nonnull Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (restoreReadOnly) {
+                connection.setReadOnly(false);
+            }
+        }
+        finally {
+            try {
+                if (owned) {
+                    connection.close();
+                }
+            }
+            finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Список значений колонки, хранящий их в {@code double[]} без упаковки в {@link Double}
+ *
+ * @see SQLTemplate#executeQueryForDoubles()
+ */
+public class DoubleResultList extends PrimitiveResultList<Double> {
+    private double[] values;
+
+    public DoubleResultList() {
+        this(null, null, null, null);
+    }
+
+    public DoubleResultList(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit) {
+        super(foundRows, foundRowsAccuracy, offset, limit);
+        this.values = new double[limit == null ? DEFAULT_CAPACITY : Math.min(limit, 1 << 16)];
+    }
+
+    private DoubleResultList(@Nonnull DoubleResultList source) {
+        super(source);
+        this.values = Arrays.copyOf(source.values, source.size);
+    }
+
+    /**
+     * Значение элемента; для {@code NULL} возвращается 0, см. {@link #isNull(int)}
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public void addDouble(double value) {
+        ensureCapacity(size + 1);
+        values[size++] = value;
+        modCount++;
+    }
+
+    /**
+     * Копия значений; {@code NULL} представлены нулями
+     */
+    public double[] toDoubleArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Double get(int index) {
+        return isNull(index) ? null : values[index];
+    }
+
+    @Override
+    public Double set(int index, Double element) {
+        Double previous = get(index);
+        values[index] = element == null ? 0 : element;
+        markNull(index, element == null);
+        return previous;
+    }
+
+    @Override
+    public boolean add(Double element) {
+        if (element == null) {
+            addNull();
+        }
+        else {
+            addDouble(element);
+        }
+        return true;
+    }
+
+    @Override
+    @Nonnull DoubleResultList copy() {
+        return new DoubleResultList(this);
+    }
+
+    @Override
+    void addFrom(@Nonnull ResultSet resultSet, int columnIndex) throws SQLException {
+        double value = resultSet.getDouble(columnIndex);
+        if (resultSet.wasNull()) {
+            addNull();
+        }
+        else {
+            addDouble(value);
+        }
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+    }
+}
@@ -4,11 +4,24 @@ import javax.annotation.Nullable;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Dmitriy Balakin <dmitriy.balakin@0x0000.ru>
@@ -16,24 +29,76 @@ import java.util.Map;
  */
 @SuppressWarnings("deprecation")
 public class ExtendedResultSet implements ResultSet {
+    /**
+     * Ключ вложения; каждому ключу выдается плотный номер, используемый как индекс в массиве вложений,
+     * поэтому ключи следует создавать как константы
+     */
     @SuppressWarnings("unused")
-    public static class AttachmentKey<T>
-    { }
+    public static class AttachmentKey<T> {
+        private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+        private final int id = NEXT_ID.getAndIncrement();
+    }
+
+    private static final Set<Class<?>> OBJECT_TYPES = new HashSet<>(Arrays.asList(
+            Object.class, String.class, BigDecimal.class, BigInteger.class, Boolean.class, Integer.class, Long.class,
+            Short.class, Byte.class, Float.class, Double.class, byte[].class, java.sql.Date.class, Time.class,
+            Timestamp.class, java.util.Date.class, LocalDate.class, LocalTime.class, LocalDateTime.class,
+            Instant.class, OffsetDateTime.class, UUID.class, Clob.class, Blob.class, Array.class, Ref.class,
+            URL.class));
 
     private final ResultSet resultSet;
-    private final Map<AttachmentKey<?>, Object> attachments = new HashMap<>();
+    private Object[] attachments;
+    private Columns columns;
 
     public ExtendedResultSet(ResultSet resultSet) {
         this.resultSet = resultSet;
     }
 
+    /**
+     * Снимок {@link ResultSetMetaData}: метки, типы и масштабы колонок и индекс колонок по метке
+     */
+    private static final class Columns {
+        private final String[] labels;
+        private final int[] types;
+        private final int[] scales;
+        private final Map<String, Integer> indexes;
+
+        private Columns(ResultSetMetaData metaData) throws SQLException {
+            int columnCount = metaData.getColumnCount();
+            labels = new String[columnCount];
+            types = new int[columnCount];
+            scales = new int[columnCount];
+            indexes = new HashMap<>(columnCount * 8 / 3 + 1);
+            for (int i = columnCount; i >= 1; i--) {
+                labels[i - 1] = metaData.getColumnLabel(i);
+                types[i - 1] = metaData.getColumnType(i);
+                scales[i - 1] = metaData.getScale(i);
+                indexes.put(labels[i - 1].toLowerCase(Locale.ROOT), i);
+            }
+            for (int i = 1; i <= columnCount; i++) {
+                if (indexes.get(labels[i - 1].toLowerCase(Locale.ROOT)) == i) {
+                    indexes.putIfAbsent(labels[i - 1], i);
+                }
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T getAttachment(AttachmentKey<T> attachmentKey) {
-        return (T) attachments.get(attachmentKey);
+        int id = attachmentKey.id;
+        return attachments == null || id >= attachments.length ? null : (T) attachments[id];
     }
 
     public <T> void putAttachment(AttachmentKey<T> attachmentKey, T attachment) {
-        attachments.put(attachmentKey, attachment);
+        int id = attachmentKey.id;
+        if (attachments == null || id >= attachments.length) {
+            if (attachment == null) {
+                return;
+            }
+            attachments = attachments == null ? new Object[id + 1] : Arrays.copyOf(attachments, id + 1);
+        }
+        attachments[id] = attachment;
     }
 
     public @Nullable Number getNumber(String columnLabel) throws SQLException {
@@ -46,10 +111,10 @@ public class ExtendedResultSet implements ResultSet {
 
     private Number getNumber(String columnLabel, int columnNumber, int columnType) throws SQLException {
         if (columnLabel != null) {
-            columnNumber = resultSet.findColumn(columnLabel);
+            columnNumber = findColumn(columnLabel);
         }
         if (columnType == 0) {
-            columnType = resultSet.getMetaData().getColumnType(columnNumber);
+            columnType = getColumnType(columnNumber);
         }
         Number result;
         switch (columnType) {
@@ -80,13 +145,55 @@ public class ExtendedResultSet implements ResultSet {
         return resultSet.wasNull() ? null : result;
     }
 
+    /**
+     * Количество колонок из снимка {@link ResultSetMetaData}, см. {@link #getColumnLabel(int)}
+     */
+    public int getColumnCount() throws SQLException {
+        return columns().labels.length;
+    }
+
+    /**
+     * Метка колонки; метаданные читаются один раз при первом обращении к любому из методов
+     * {@link #getColumnCount()}, {@link #getColumnLabel(int)}, {@link #getColumnType(int)},
+     * {@link #getColumnScale(int)} и {@link #findColumn(String)}
+     */
+    public String getColumnLabel(int columnIndex) throws SQLException {
+        return columns().labels[columnIndex - 1];
+    }
+
+    /**
+     * Тип колонки, см. {@link Types}
+     */
+    public int getColumnType(int columnIndex) throws SQLException {
+        return columns().types[columnIndex - 1];
+    }
+
+    public int getColumnScale(int columnIndex) throws SQLException {
+        return columns().scales[columnIndex - 1];
+    }
+
+    /**
+     * Метки колонок из снимка метаданных; для одного result set'а всегда возвращается один и тот же массив,
+     * который нельзя изменять
+     */
+    String[] getColumnLabels() throws SQLException {
+        return columns().labels;
+    }
+
+    private Columns columns() throws SQLException {
+        if (columns == null) {
+            columns = new Columns(resultSet.getMetaData());
+        }
+        return columns;
+    }
+
     public Integer getIntegerBox(int columnIndex) throws SQLException {
         int value = resultSet.getInt(columnIndex);
         return resultSet.wasNull() ? null : value;
     }
 
     public Integer getIntegerBox(String columnName) throws SQLException {
-        int value = resultSet.getInt(columnName);
+        int value = resultSet.getInt(findColumn(columnName));
         return resultSet.wasNull() ? null : value;
     }
 
@@ -96,7 +203,7 @@ public class ExtendedResultSet implements ResultSet {
     }
 
     public Long getLongBox(String columnName) throws SQLException {
-        long value = resultSet.getLong(columnName);
+        long value = resultSet.getLong(findColumn(columnName));
         return resultSet.wasNull() ? null : value;
     }
 
@@ -106,7 +213,7 @@ public class ExtendedResultSet implements ResultSet {
     }
 
     public Float getFloatBox(String columnName) throws SQLException {
-        float value = resultSet.getFloat(columnName);
+        float value = resultSet.getFloat(findColumn(columnName));
         return resultSet.wasNull() ? null : value;
     }
 
@@ -116,14 +223,14 @@ public class ExtendedResultSet implements ResultSet {
     }
 
     public Double getDoubleBox(String columnName) throws SQLException {
-        double value = resultSet.getDouble(columnName);
+        double value = resultSet.getDouble(findColumn(columnName));
         return resultSet.wasNull() ? null : value;
     }
 
     // JDBC 4.1 compatibility for legacy resultsets
     @Override
     public @Nullable <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
-        return getObject(resultSet, resultSet.findColumn(columnLabel), type);
+        return getObject(resultSet, findColumn(columnLabel), type);
     }
 
     @Override
@@ -131,6 +238,14 @@ public class ExtendedResultSet implements ResultSet {
         return getObject(resultSet, columnIndex, type);
     }
 
+    /**
+     * Читается ли значение типа {@code type} через {@link #getObject(ResultSet, int, Class)} с приведением
+     * к этому типу; для остальных типов возвращается значение {@link ResultSet#getObject(int)} как есть
+     */
+    static boolean isObjectTypeSupported(Class<?> type) {
+        return type.isPrimitive() ? type != void.class : OBJECT_TYPES.contains(type);
+    }
+
     public static <T> T getObject(ResultSet resultSet, int columnIndex, Class<T> type) throws SQLException {
         T notNullObject = getNotNullObject(resultSet, columnIndex, type);
         if (resultSet.wasNull()) {
@@ -147,6 +262,10 @@ public class ExtendedResultSet implements ResultSet {
         else if (type.equals(BigDecimal.class)) {
             return (T) resultSet.getBigDecimal(columnIndex);
         }
+        else if (type.equals(BigInteger.class)) {
+            BigDecimal value = resultSet.getBigDecimal(columnIndex);
+            return value == null ? null : (T) value.toBigInteger();
+        }
         else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
             return (T) Boolean.valueOf(resultSet.getBoolean(columnIndex));
         }
@@ -156,6 +275,12 @@ public class ExtendedResultSet implements ResultSet {
         else if (type.equals(Long.class) || type.equals(long.class)) {
             return (T) Long.valueOf(resultSet.getLong(columnIndex));
         }
+        else if (type.equals(Short.class) || type.equals(short.class)) {
+            return (T) Short.valueOf(resultSet.getShort(columnIndex));
+        }
+        else if (type.equals(Byte.class) || type.equals(byte.class)) {
+            return (T) Byte.valueOf(resultSet.getByte(columnIndex));
+        }
         else if (type.equals(Float.class) || type.equals(float.class)) {
             return (T) Float.valueOf(resultSet.getFloat(columnIndex));
         }
@@ -171,9 +296,31 @@ public class ExtendedResultSet implements ResultSet {
         else if (type.equals(Time.class)) {
             return (T) resultSet.getTime(columnIndex);
         }
-        else if (type.equals(Timestamp.class)) {
+        else if (type.equals(Timestamp.class) || type.equals(java.util.Date.class)) {
             return (T) resultSet.getTimestamp(columnIndex);
         }
+        else if (type.equals(LocalDate.class)) {
+            java.sql.Date value = resultSet.getDate(columnIndex);
+            return value == null ? null : (T) value.toLocalDate();
+        }
+        else if (type.equals(LocalTime.class)) {
+            Time value = resultSet.getTime(columnIndex);
+            return value == null ? null : (T) value.toLocalTime();
+        }
+        else if (type.equals(LocalDateTime.class)) {
+            Timestamp value = resultSet.getTimestamp(columnIndex);
+            return value == null ? null : (T) value.toLocalDateTime();
+        }
+        else if (type.equals(Instant.class)) {
+            Timestamp value = resultSet.getTimestamp(columnIndex);
+            return value == null ? null : (T) value.toInstant();
+        }
+        else if (type.equals(OffsetDateTime.class)) {
+            return resultSet.getObject(columnIndex, type);
+        }
+        else if (type.equals(UUID.class)) {
+            return (T) toUUID(resultSet.getObject(columnIndex));
+        }
         else if (type.equals(Clob.class)) {
             return (T) resultSet.getClob(columnIndex);
         }
@@ -194,6 +341,22 @@ public class ExtendedResultSet implements ResultSet {
         }
     }
 
+    private static UUID toUUID(Object value) throws SQLException {
+        if (value == null || value instanceof UUID) {
+            return (UUID) value;
+        }
+        if (value instanceof byte[] && ((byte[]) value).length == 16) {
+            ByteBuffer buffer = ByteBuffer.wrap((byte[]) value);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        try {
+            return UUID.fromString(value.toString());
+        }
+        catch (IllegalArgumentException ex) {
+            throw new SQLException("Cannot convert '" + value + "' to UUID", ex);
+        }
+    }
+
     // Delegates
 
     @Override
@@ -293,82 +456,82 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable String getString(String columnLabel) throws SQLException {
-        return resultSet.getString(columnLabel);
+        return resultSet.getString(findColumn(columnLabel));
     }
 
     @Override
     public boolean getBoolean(String columnLabel) throws SQLException {
-        return resultSet.getBoolean(columnLabel);
+        return resultSet.getBoolean(findColumn(columnLabel));
     }
 
     @Override
     public byte getByte(String columnLabel) throws SQLException {
-        return resultSet.getByte(columnLabel);
+        return resultSet.getByte(findColumn(columnLabel));
     }
 
     @Override
     public short getShort(String columnLabel) throws SQLException {
-        return resultSet.getShort(columnLabel);
+        return resultSet.getShort(findColumn(columnLabel));
     }
 
     @Override
     public int getInt(String columnLabel) throws SQLException {
-        return resultSet.getInt(columnLabel);
+        return resultSet.getInt(findColumn(columnLabel));
     }
 
     @Override
     public long getLong(String columnLabel) throws SQLException {
-        return resultSet.getLong(columnLabel);
+        return resultSet.getLong(findColumn(columnLabel));
     }
 
     @Override
     public float getFloat(String columnLabel) throws SQLException {
-        return resultSet.getFloat(columnLabel);
+        return resultSet.getFloat(findColumn(columnLabel));
     }
 
     @Override
     public double getDouble(String columnLabel) throws SQLException {
-        return resultSet.getDouble(columnLabel);
+        return resultSet.getDouble(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
-        return resultSet.getBigDecimal(columnLabel, scale);
+        return resultSet.getBigDecimal(findColumn(columnLabel), scale);
     }
 
     @Override
     public @Nullable byte[] getBytes(String columnLabel) throws SQLException {
-        return resultSet.getBytes(columnLabel);
+        return resultSet.getBytes(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable Date getDate(String columnLabel) throws SQLException {
-        return resultSet.getDate(columnLabel);
+        return resultSet.getDate(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable Time getTime(String columnLabel) throws SQLException {
-        return resultSet.getTime(columnLabel);
+        return resultSet.getTime(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable Timestamp getTimestamp(String columnLabel) throws SQLException {
-        return resultSet.getTimestamp(columnLabel);
+        return resultSet.getTimestamp(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable InputStream getAsciiStream(String columnLabel) throws SQLException {
-        return resultSet.getAsciiStream(columnLabel);
+        return resultSet.getAsciiStream(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable InputStream getUnicodeStream(String columnLabel) throws SQLException {
-        return resultSet.getUnicodeStream(columnLabel);
+        return resultSet.getUnicodeStream(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable InputStream getBinaryStream(String columnLabel) throws SQLException {
-        return resultSet.getBinaryStream(columnLabel);
+        return resultSet.getBinaryStream(findColumn(columnLabel));
     }
 
     @Override
@@ -398,12 +561,26 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Object getObject(String columnLabel) throws SQLException {
-        return resultSet.getObject(columnLabel);
+        return resultSet.getObject(findColumn(columnLabel));
     }
 
+    /**
+     * Индекс колонки по метке из таблицы, построенной по {@link ResultSetMetaData} при первом обращении;
+     * как и в JDBC, метка сравнивается без учета регистра и при совпадении выбирается первая колонка.
+     * Метка в исходном регистре и уже встречавшееся написание находятся без приведения к нижнему регистру.
+     */
     @Override
     public int findColumn(String columnLabel) throws SQLException {
-        return resultSet.findColumn(columnLabel);
+        Map<String, Integer> columnIndexes = columns().indexes;
+        Integer columnIndex = columnIndexes.get(columnLabel);
+        if (columnIndex == null) {
+            columnIndex = columnIndexes.get(columnLabel.toLowerCase(Locale.ROOT));
+            if (columnIndex == null) {
+                return resultSet.findColumn(columnLabel);
+            }
+            columnIndexes.put(columnLabel, columnIndex);
+        }
+        return columnIndex;
     }
 
     @Override
@@ -413,7 +590,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Reader getCharacterStream(String columnLabel) throws SQLException {
-        return resultSet.getCharacterStream(columnLabel);
+        return resultSet.getCharacterStream(findColumn(columnLabel));
     }
 
     @Override
@@ -423,7 +600,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable BigDecimal getBigDecimal(String columnLabel) throws SQLException {
-        return resultSet.getBigDecimal(columnLabel);
+        return resultSet.getBigDecimal(findColumn(columnLabel));
     }
 
     @Override
@@ -628,97 +805,97 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNull(String columnLabel) throws SQLException {
-        resultSet.updateNull(columnLabel);
+        resultSet.updateNull(findColumn(columnLabel));
     }
 
     @Override
     public void updateBoolean(String columnLabel, boolean x) throws SQLException {
-        resultSet.updateBoolean(columnLabel, x);
+        resultSet.updateBoolean(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateByte(String columnLabel, byte x) throws SQLException {
-        resultSet.updateByte(columnLabel, x);
+        resultSet.updateByte(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateShort(String columnLabel, short x) throws SQLException {
-        resultSet.updateShort(columnLabel, x);
+        resultSet.updateShort(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateInt(String columnLabel, int x) throws SQLException {
-        resultSet.updateInt(columnLabel, x);
+        resultSet.updateInt(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateLong(String columnLabel, long x) throws SQLException {
-        resultSet.updateLong(columnLabel, x);
+        resultSet.updateLong(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateFloat(String columnLabel, float x) throws SQLException {
-        resultSet.updateFloat(columnLabel, x);
+        resultSet.updateFloat(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateDouble(String columnLabel, double x) throws SQLException {
-        resultSet.updateDouble(columnLabel, x);
+        resultSet.updateDouble(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
-        resultSet.updateBigDecimal(columnLabel, x);
+        resultSet.updateBigDecimal(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateString(String columnLabel, String x) throws SQLException {
-        resultSet.updateString(columnLabel, x);
+        resultSet.updateString(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateBytes(String columnLabel, byte[] x) throws SQLException {
-        resultSet.updateBytes(columnLabel, x);
+        resultSet.updateBytes(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateDate(String columnLabel, Date x) throws SQLException {
-        resultSet.updateDate(columnLabel, x);
+        resultSet.updateDate(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateTime(String columnLabel, Time x) throws SQLException {
-        resultSet.updateTime(columnLabel, x);
+        resultSet.updateTime(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
-        resultSet.updateTimestamp(columnLabel, x);
+        resultSet.updateTimestamp(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
-        resultSet.updateAsciiStream(columnLabel, x, length);
+        resultSet.updateAsciiStream(findColumn(columnLabel), x, length);
     }
 
     @Override
     public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
-        resultSet.updateBinaryStream(columnLabel, x, length);
+        resultSet.updateBinaryStream(findColumn(columnLabel), x, length);
     }
 
     @Override
     public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
-        resultSet.updateCharacterStream(columnLabel, reader, length);
+        resultSet.updateCharacterStream(findColumn(columnLabel), reader, length);
     }
 
     @Override
     public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
-        resultSet.updateObject(columnLabel, x, scaleOrLength);
+        resultSet.updateObject(findColumn(columnLabel), x, scaleOrLength);
     }
 
     @Override
     public void updateObject(String columnLabel, Object x) throws SQLException {
-        resultSet.updateObject(columnLabel, x);
+        resultSet.updateObject(findColumn(columnLabel), x);
     }
 
     @Override
@@ -788,27 +965,27 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
-        return resultSet.getObject(columnLabel, map);
+        return resultSet.getObject(findColumn(columnLabel), map);
     }
 
     @Override
     public Ref getRef(String columnLabel) throws SQLException {
-        return resultSet.getRef(columnLabel);
+        return resultSet.getRef(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable Blob getBlob(String columnLabel) throws SQLException {
-        return resultSet.getBlob(columnLabel);
+        return resultSet.getBlob(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable Clob getClob(String columnLabel) throws SQLException {
-        return resultSet.getClob(columnLabel);
+        return resultSet.getClob(findColumn(columnLabel));
     }
 
     @Override
     public @Nullable Array getArray(String columnLabel) throws SQLException {
-        return resultSet.getArray(columnLabel);
+        return resultSet.getArray(findColumn(columnLabel));
     }
 
     @Override
@@ -818,7 +995,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Date getDate(String columnLabel, Calendar cal) throws SQLException {
-        return resultSet.getDate(columnLabel, cal);
+        return resultSet.getDate(findColumn(columnLabel), cal);
     }
 
     @Override
@@ -828,7 +1005,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Time getTime(String columnLabel, Calendar cal) throws SQLException {
-        return resultSet.getTime(columnLabel, cal);
+        return resultSet.getTime(findColumn(columnLabel), cal);
     }
 
     @Override
@@ -838,7 +1015,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
-        return resultSet.getTimestamp(columnLabel, cal);
+        return resultSet.getTimestamp(findColumn(columnLabel), cal);
     }
 
     @Override
@@ -848,7 +1025,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable URL getURL(String columnLabel) throws SQLException {
-        return resultSet.getURL(columnLabel);
+        return resultSet.getURL(findColumn(columnLabel));
     }
 
     @Override
@@ -858,7 +1035,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateRef(String columnLabel, Ref x) throws SQLException {
-        resultSet.updateRef(columnLabel, x);
+        resultSet.updateRef(findColumn(columnLabel), x);
     }
 
     @Override
@@ -868,7 +1045,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateBlob(String columnLabel, Blob x) throws SQLException {
-        resultSet.updateBlob(columnLabel, x);
+        resultSet.updateBlob(findColumn(columnLabel), x);
     }
 
     @Override
@@ -878,7 +1055,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateClob(String columnLabel, Clob x) throws SQLException {
-        resultSet.updateClob(columnLabel, x);
+        resultSet.updateClob(findColumn(columnLabel), x);
     }
 
     @Override
@@ -888,7 +1065,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateArray(String columnLabel, Array x) throws SQLException {
-        resultSet.updateArray(columnLabel, x);
+        resultSet.updateArray(findColumn(columnLabel), x);
     }
 
     @Override
@@ -898,7 +1075,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public RowId getRowId(String columnLabel) throws SQLException {
-        return resultSet.getRowId(columnLabel);
+        return resultSet.getRowId(findColumn(columnLabel));
     }
 
     @Override
@@ -908,7 +1085,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateRowId(String columnLabel, RowId x) throws SQLException {
-        resultSet.updateRowId(columnLabel, x);
+        resultSet.updateRowId(findColumn(columnLabel), x);
     }
 
     @Override
@@ -928,7 +1105,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNString(String columnLabel, String nString) throws SQLException {
-        resultSet.updateNString(columnLabel, nString);
+        resultSet.updateNString(findColumn(columnLabel), nString);
     }
 
     @Override
@@ -938,7 +1115,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNClob(String columnLabel, NClob nClob) throws SQLException {
-        resultSet.updateNClob(columnLabel, nClob);
+        resultSet.updateNClob(findColumn(columnLabel), nClob);
     }
 
     @Override
@@ -948,7 +1125,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable NClob getNClob(String columnLabel) throws SQLException {
-        return resultSet.getNClob(columnLabel);
+        return resultSet.getNClob(findColumn(columnLabel));
     }
 
     @Override
@@ -958,7 +1135,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable SQLXML getSQLXML(String columnLabel) throws SQLException {
-        return resultSet.getSQLXML(columnLabel);
+        return resultSet.getSQLXML(findColumn(columnLabel));
     }
 
     @Override
@@ -968,7 +1145,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateSQLXML(String columnLabel, SQLXML xmlObject) throws SQLException {
-        resultSet.updateSQLXML(columnLabel, xmlObject);
+        resultSet.updateSQLXML(findColumn(columnLabel), xmlObject);
     }
 
     @Override
@@ -978,7 +1155,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable String getNString(String columnLabel) throws SQLException {
-        return resultSet.getNString(columnLabel);
+        return resultSet.getNString(findColumn(columnLabel));
     }
 
     @Override
@@ -988,7 +1165,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public @Nullable Reader getNCharacterStream(String columnLabel) throws SQLException {
-        return resultSet.getNCharacterStream(columnLabel);
+        return resultSet.getNCharacterStream(findColumn(columnLabel));
     }
 
     @Override
@@ -998,7 +1175,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
-        resultSet.updateNCharacterStream(columnLabel, reader, length);
+        resultSet.updateNCharacterStream(findColumn(columnLabel), reader, length);
     }
 
     @Override
@@ -1018,17 +1195,17 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
-        resultSet.updateAsciiStream(columnLabel, x, length);
+        resultSet.updateAsciiStream(findColumn(columnLabel), x, length);
     }
 
     @Override
     public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
-        resultSet.updateBinaryStream(columnLabel, x, length);
+        resultSet.updateBinaryStream(findColumn(columnLabel), x, length);
     }
 
     @Override
     public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
-        resultSet.updateCharacterStream(columnLabel, reader, length);
+        resultSet.updateCharacterStream(findColumn(columnLabel), reader, length);
     }
 
     @Override
@@ -1038,7 +1215,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
-        resultSet.updateBlob(columnLabel, inputStream, length);
+        resultSet.updateBlob(findColumn(columnLabel), inputStream, length);
     }
 
     @Override
@@ -1048,7 +1225,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
-        resultSet.updateClob(columnLabel, reader, length);
+        resultSet.updateClob(findColumn(columnLabel), reader, length);
     }
 
     @Override
@@ -1058,7 +1235,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
-        resultSet.updateNClob(columnLabel, reader, length);
+        resultSet.updateNClob(findColumn(columnLabel), reader, length);
     }
 
     @Override
@@ -1068,7 +1245,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
-        resultSet.updateNCharacterStream(columnLabel, reader);
+        resultSet.updateNCharacterStream(findColumn(columnLabel), reader);
     }
 
     @Override
@@ -1088,17 +1265,17 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
-        resultSet.updateAsciiStream(columnLabel, x);
+        resultSet.updateAsciiStream(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
-        resultSet.updateBinaryStream(columnLabel, x);
+        resultSet.updateBinaryStream(findColumn(columnLabel), x);
     }
 
     @Override
     public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
-        resultSet.updateCharacterStream(columnLabel, reader);
+        resultSet.updateCharacterStream(findColumn(columnLabel), reader);
     }
 
     @Override
@@ -1108,7 +1285,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
-        resultSet.updateBlob(columnLabel, inputStream);
+        resultSet.updateBlob(findColumn(columnLabel), inputStream);
     }
 
     @Override
@@ -1118,7 +1295,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateClob(String columnLabel, Reader reader) throws SQLException {
-        resultSet.updateClob(columnLabel, reader);
+        resultSet.updateClob(findColumn(columnLabel), reader);
     }
 
     @Override
@@ -1128,7 +1305,7 @@ public class ExtendedResultSet implements ResultSet {
 
     @Override
     public void updateNClob(String columnLabel, Reader reader) throws SQLException {
-        resultSet.updateNClob(columnLabel, reader);
+        resultSet.updateNClob(findColumn(columnLabel), reader);
     }
 
     @Override
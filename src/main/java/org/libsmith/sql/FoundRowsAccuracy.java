@@ -0,0 +1,21 @@
+package org.libsmith.sql;
+
+/**
+ * Происхождение значения {@link ResultCollection#getFoundRows()}
+ */
+public enum FoundRowsAccuracy {
+    /**
+     * Значение подсчитано при выполнении запроса
+     */
+    EXACT,
+
+    /**
+     * Точное значение, подсчитанное ранее и взятое из {@link FoundRowsCache}
+     */
+    CACHED,
+
+    /**
+     * Оценка планировщика запросов по результату {@code EXPLAIN}
+     */
+    ESTIMATED
+}
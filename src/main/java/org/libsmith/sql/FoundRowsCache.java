@@ -0,0 +1,73 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш общего количества строк с ограниченным временем жизни. Ключом служит текст запроса без
+ * {@link SQLLimit} и без подсказки {@link SQLSelect.MySQLHint#SQL_CALC_FOUND_ROWS} вместе с его параметрами,
+ * поэтому все страницы одной выборки разделяют одно значение.
+ */
+public class FoundRowsCache {
+    private final long ttlNanos;
+    private final LRUCache<QueryKey, Entry> cache;
+    private final Lock lock = new ReentrantLock();
+
+    public FoundRowsCache(long ttl, @Nonnull TimeUnit unit, int maxSize) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.cache = new LRUCache<>(maxSize);
+    }
+
+    @Nullable Integer get(@Nonnull SQLFragment rowsQuery) {
+        QueryKey key = new QueryKey(rowsQuery, null);
+        lock.lock();
+        try {
+            Entry entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.createdNanos > ttlNanos) {
+                cache.remove(key);
+                return null;
+            }
+            return entry.foundRows;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    void put(@Nonnull SQLFragment rowsQuery, int foundRows) {
+        Entry entry = new Entry(foundRows, System.nanoTime());
+        lock.lock();
+        try {
+            cache.put(new QueryKey(rowsQuery, null), entry);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            cache.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final int foundRows;
+        private final long createdNanos;
+
+        private Entry(int foundRows, long createdNanos) {
+            this.foundRows = foundRows;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
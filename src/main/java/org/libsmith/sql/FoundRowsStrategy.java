@@ -0,0 +1,20 @@
+package org.libsmith.sql;
+
+/**
+ * Способ получения общего количества строк для запросов с {@link SQLSelect.MySQLHint#SQL_CALC_FOUND_ROWS}
+ */
+public enum FoundRowsStrategy {
+    /**
+     * {@code SELECT FOUND_ROWS()} на том же соединении после основного запроса
+     */
+    CALC_FOUND_ROWS,
+
+    /**
+     * Подсказка {@code SQL_CALC_FOUND_ROWS} убирается из основного запроса, а количество строк считается
+     * отдельным запросом {@code SELECT COUNT(*)} по тому же шаблону без ограничения {@link SQLLimit}.
+     * Если у фабрики задан executor и не ограничено количество соединений
+     * ({@link SQLTemplateFactory#connectionPermits(int)}), то запрос выполняется параллельно на втором соединении;
+     * если второе соединение не получено к концу основного запроса, подсчет выполняется на основном.
+     */
+    COUNT_QUERY
+}
@@ -0,0 +1,32 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nullable;
+
+/**
+ * Дополнение списков значений {@code IN (...)} до размера ближайшей степени двойки, чтобы количество
+ * различных текстов запроса росло логарифмически от размера списка.
+ */
+public enum InListBucketing {
+    /**
+     * Дополнение последним значением списка; безопасно и для {@code IN}, и для {@code NOT IN}
+     */
+    REPEAT_LAST,
+
+    /**
+     * Дополнение значениями {@code NULL}; для {@code NOT IN} автоматически заменяется на {@link #REPEAT_LAST},
+     * поскольку {@code NULL} в списке делает условие ложным
+     */
+    NULL;
+
+    public static int bucketSize(int size) {
+        if (size <= 1) {
+            return size;
+        }
+        int bucket = Integer.highestOneBit(size - 1) << 1;
+        return bucket < 0 ? size : bucket;
+    }
+
+    public @Nullable Object padValue(@Nullable Object lastValue) {
+        return this == NULL ? null : lastValue;
+    }
+}
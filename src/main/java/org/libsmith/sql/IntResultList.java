@@ -0,0 +1,80 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Список значений колонки, хранящий их в {@code int[]} без упаковки в {@link Integer}
+ *
+ * @see SQLTemplate#executeQueryForInts()
+ */
+public class IntResultList extends IntegralResultList<Integer> {
+    private int[] values;
+
+    public IntResultList() {
+        this(null, null, null, null);
+    }
+
+    public IntResultList(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit) {
+        super(foundRows, foundRowsAccuracy, offset, limit);
+        this.values = new int[limit == null ? DEFAULT_CAPACITY : Math.min(limit, 1 << 16)];
+    }
+
+    private IntResultList(@Nonnull IntResultList source) {
+        super(source);
+        this.values = Arrays.copyOf(source.values, source.size);
+    }
+
+    /**
+     * Значение элемента; для {@code NULL} возвращается 0, см. {@link #isNull(int)}
+     */
+    public int getInt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public void addInt(int value) {
+        append(value);
+    }
+
+    /**
+     * Копия значений; {@code NULL} представлены нулями
+     */
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    @Nonnull IntResultList copy() {
+        return new IntResultList(this);
+    }
+
+    @Override
+    protected long load(int index) {
+        return values[index];
+    }
+
+    @Override
+    protected void store(int index, long value) {
+        values[index] = (int) value;
+    }
+
+    @Override
+    protected Integer box(long value) {
+        return (int) value;
+    }
+
+    @Override
+    protected long read(@Nonnull ResultSet resultSet, int columnIndex) throws SQLException {
+        return resultSet.getInt(columnIndex);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+    }
+}
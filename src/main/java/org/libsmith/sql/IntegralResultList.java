@@ -0,0 +1,81 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Основа списков целочисленных значений колонки: наследники задают только хранение в массиве своего примитива,
+ * упаковку и чтение из {@link ResultSet}
+ *
+ * @see IntResultList
+ * @see LongResultList
+ */
+public abstract class IntegralResultList<T extends Number> extends PrimitiveResultList<T> {
+
+    protected IntegralResultList(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit) {
+        super(foundRows, foundRowsAccuracy, offset, limit);
+    }
+
+    protected IntegralResultList(@Nonnull IntegralResultList<T> source) {
+        super(source);
+    }
+
+    /**
+     * Значение в позиции без проверки индекса и отметки {@code NULL}
+     */
+    protected abstract long load(int index);
+
+    /**
+     * Записывает значение в позицию; место под нее уже гарантировано {@link #ensureCapacity(int)}
+     */
+    protected abstract void store(int index, long value);
+
+    protected abstract T box(long value);
+
+    /**
+     * Читает значение колонки; {@code NULL} определяется по {@link ResultSet#wasNull()}
+     */
+    protected abstract long read(@Nonnull ResultSet resultSet, int columnIndex) throws SQLException;
+
+    protected void append(long value) {
+        ensureCapacity(size + 1);
+        store(size++, value);
+        modCount++;
+    }
+
+    @Override
+    public T get(int index) {
+        return isNull(index) ? null : box(load(index));
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T previous = get(index);
+        store(index, element == null ? 0 : element.longValue());
+        markNull(index, element == null);
+        return previous;
+    }
+
+    @Override
+    public boolean add(T element) {
+        if (element == null) {
+            addNull();
+        }
+        else {
+            append(element.longValue());
+        }
+        return true;
+    }
+
+    @Override
+    void addFrom(@Nonnull ResultSet resultSet, int columnIndex) throws SQLException {
+        long value = read(resultSet, columnIndex);
+        if (resultSet.wasNull()) {
+            addNull();
+        }
+        else {
+            append(value);
+        }
+    }
+}
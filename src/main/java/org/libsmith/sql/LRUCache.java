@@ -0,0 +1,37 @@
+package org.libsmith.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограниченный по размеру {@link LinkedHashMap} в режиме access-order. Не синхронизирован.
+ */
+class LRUCache<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = -2745320953412786510L;
+
+    private final int maxSize;
+
+    LRUCache(int maxSize) {
+        super(16, 0.75f, true);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be equals or greater than 1, got " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        if (size() > maxSize) {
+            onEviction(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+        return false;
+    }
+
+    protected void onEviction(K key, V value)
+    { }
+}
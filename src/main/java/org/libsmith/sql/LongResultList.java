@@ -0,0 +1,80 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Список значений колонки, хранящий их в {@code long[]} без упаковки в {@link Long}
+ *
+ * @see SQLTemplate#executeQueryForLongs()
+ */
+public class LongResultList extends IntegralResultList<Long> {
+    private long[] values;
+
+    public LongResultList() {
+        this(null, null, null, null);
+    }
+
+    public LongResultList(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit) {
+        super(foundRows, foundRowsAccuracy, offset, limit);
+        this.values = new long[limit == null ? DEFAULT_CAPACITY : Math.min(limit, 1 << 16)];
+    }
+
+    private LongResultList(@Nonnull LongResultList source) {
+        super(source);
+        this.values = Arrays.copyOf(source.values, source.size);
+    }
+
+    /**
+     * Значение элемента; для {@code NULL} возвращается 0, см. {@link #isNull(int)}
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public void addLong(long value) {
+        append(value);
+    }
+
+    /**
+     * Копия значений; {@code NULL} представлены нулями
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    @Nonnull LongResultList copy() {
+        return new LongResultList(this);
+    }
+
+    @Override
+    protected long load(int index) {
+        return values[index];
+    }
+
+    @Override
+    protected void store(int index, long value) {
+        values[index] = value;
+    }
+
+    @Override
+    protected Long box(long value) {
+        return value;
+    }
+
+    @Override
+    protected long read(@Nonnull ResultSet resultSet, int columnIndex) throws SQLException {
+        return resultSet.getLong(columnIndex);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+    }
+}
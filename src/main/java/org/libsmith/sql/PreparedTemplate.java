@@ -0,0 +1,94 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Неизменяемый шаблон запроса, в котором именованные плейсхолдеры заранее разрешены в целочисленные слоты.
+ * Может разделяться между потоками; каждое выполнение связывает значения в собственный {@link SQLTemplate},
+ * который хранит их в массиве по номеру слота.
+ */
+public final class PreparedTemplate {
+    private final CompiledTemplate compiledTemplate;
+    private final SQLTemplateFactory factory;
+    private final String[] slotNames;
+    private final int[] placeholderSlots;
+    private final Map<String, Integer> slotMap;
+
+    public PreparedTemplate(@Nonnull CompiledTemplate compiledTemplate, @Nonnull DataSource dataSource) {
+        this(compiledTemplate, SQLTemplateFactory.defaultFactory(dataSource));
+    }
+
+    PreparedTemplate(@Nonnull CompiledTemplate compiledTemplate, @Nonnull SQLTemplateFactory factory) {
+        this.compiledTemplate = compiledTemplate;
+        this.factory = factory;
+        int placeholderCount = compiledTemplate.getPlaceholderCount();
+        Map<String, Integer> slotMap = new HashMap<>();
+        this.placeholderSlots = new int[placeholderCount];
+        for (int i = 0; i < placeholderCount; i++) {
+            String name = compiledTemplate.getPlaceholder(i);
+            Integer slot = slotMap.get(name);
+            if (slot == null) {
+                slot = slotMap.size();
+                slotMap.put(name, slot);
+            }
+            placeholderSlots[i] = slot;
+        }
+        this.slotNames = new String[slotMap.size()];
+        for (Map.Entry<String, Integer> entry : slotMap.entrySet()) {
+            slotNames[entry.getValue()] = entry.getKey();
+        }
+        this.slotMap = Collections.unmodifiableMap(slotMap);
+    }
+
+    public @Nonnull SQLTemplate bind() {
+        return new SQLTemplate(this);
+    }
+
+    /**
+     * Связывает шаблон для выполнения на соединении сессии
+     */
+    public @Nonnull SQLTemplate bind(@Nonnull SQLSession session) {
+        return session.template(this);
+    }
+
+    public @Nonnull CompiledTemplate getCompiledTemplate() {
+        return compiledTemplate;
+    }
+
+    public @Nonnull DataSource getDataSource() {
+        return factory.getDataSource();
+    }
+
+    @Nonnull SQLTemplateFactory getFactory() {
+        return factory;
+    }
+
+    public int getSlotCount() {
+        return slotNames.length;
+    }
+
+    /**
+     * Возвращает номер слота для именованного плейсхолдера или -1, если плейсхолдер в шаблоне не используется
+     */
+    public int slotOf(@Nonnull String placeholderName) {
+        Integer slot = slotMap.get(placeholderName);
+        return slot == null ? -1 : slot;
+    }
+
+    public @Nonnull String getSlotName(int slot) {
+        return slotNames[slot];
+    }
+
+    int getPlaceholderSlot(int placeholderIndex) {
+        return placeholderSlots[placeholderIndex];
+    }
+
+    @Override
+    public String toString() {
+        return compiledTemplate.toString();
+    }
+}
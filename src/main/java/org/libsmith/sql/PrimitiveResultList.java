@@ -0,0 +1,129 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Основа списков результата, хранящих значения одной колонки в массиве примитивов. {@code NULL} отмечается
+ * в битовой карте, которая создается только при появлении первого {@code NULL}.
+ *
+ * @see IntResultList
+ * @see LongResultList
+ * @see DoubleResultList
+ */
+public abstract class PrimitiveResultList<T> extends AbstractList<T> implements ResultList<T> {
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final Integer foundRows;
+    private final FoundRowsAccuracy foundRowsAccuracy;
+    private final Long offset;
+    private final Integer limit;
+    private long[] nulls;
+    protected int size;
+
+    protected PrimitiveResultList(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit) {
+        this.foundRows = foundRows;
+        this.foundRowsAccuracy = foundRowsAccuracy;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    protected PrimitiveResultList(@Nonnull PrimitiveResultList<T> source) {
+        this(source.foundRows, source.foundRowsAccuracy, source.offset, source.limit);
+        this.nulls = source.nulls == null ? null : source.nulls.clone();
+        this.size = source.size;
+    }
+
+    /**
+     * Независимая копия списка вместе с атрибутами результата
+     */
+    abstract @Nonnull PrimitiveResultList<T> copy();
+
+    /**
+     * Читает значение колонки текущей строки и добавляет его в конец списка
+     */
+    abstract void addFrom(@Nonnull ResultSet resultSet, int columnIndex) throws SQLException;
+
+    /**
+     * Гарантирует место для еще одного элемента; вызывается наследниками перед записью в позицию {@link #size}
+     */
+    protected abstract void ensureCapacity(int capacity);
+
+    protected static int grow(int capacity, int required) {
+        return Math.max(required, capacity + (capacity >> 1) + 1);
+    }
+
+    public boolean isNull(int index) {
+        checkIndex(index);
+        return nulls != null && (nulls[index >>> 6] & 1L << index) != 0;
+    }
+
+    public void addNull() {
+        ensureCapacity(size + 1);
+        markNull(size, true);
+        size++;
+        modCount++;
+    }
+
+    protected void markNull(int index, boolean isNull) {
+        if (nulls == null) {
+            if (!isNull) {
+                return;
+            }
+            nulls = new long[Math.max(1, (index >>> 6) + 1)];
+        }
+        else if ((index >>> 6) >= nulls.length) {
+            if (!isNull) {
+                return;
+            }
+            nulls = Arrays.copyOf(nulls, Math.max((index >>> 6) + 1, nulls.length * 2));
+        }
+        if (isNull) {
+            nulls[index >>> 6] |= 1L << index;
+        }
+        else {
+            nulls[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        nulls = null;
+        modCount++;
+    }
+
+    @Override
+    public Long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Integer getLimit() {
+        return limit;
+    }
+
+    @Override
+    public Integer getFoundRows() {
+        return foundRows;
+    }
+
+    @Override
+    public FoundRowsAccuracy getFoundRowsAccuracy() {
+        return foundRows == null ? null : foundRowsAccuracy;
+    }
+}
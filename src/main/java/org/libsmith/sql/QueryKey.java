@@ -0,0 +1,46 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ключ кэшей уровня запроса: раскрытый текст запроса, его параметры и, при необходимости, признак
+ * способа получения результата (например, {@link SQLTemplate.Mapper})
+ */
+final class QueryKey {
+    private final String query;
+    private final List<Object> parameters;
+    private final Object discriminator;
+    private final int hashCode;
+
+    QueryKey(@Nonnull SQLFragment query, @Nullable Object discriminator) {
+        this.query = query.getFragment();
+        this.parameters = query.getParameters();
+        this.discriminator = discriminator;
+        this.hashCode = 31 * (31 * this.query.hashCode() + parameters.hashCode()) + Objects.hashCode(discriminator);
+    }
+
+    @Nonnull String getQuery() {
+        return query;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryKey)) {
+            return false;
+        }
+        QueryKey that = (QueryKey) o;
+        return hashCode == that.hashCode && query.equals(that.query) && parameters.equals(that.parameters)
+               && Objects.equals(discriminator, that.discriminator);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,479 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш результатов запросов с ограниченным временем жизни. Размер кэша ограничен суммарным весом записей:
+ * вес результата-коллекции равен количеству строк, любого другого результата — единице; при превышении
+ * вытесняются давно не использованные записи.
+ * <p>
+ * Каждая запись помечена именами таблиц, из которых читает запрос: таблицами всех списков {@code FROM}
+ * и {@code JOIN}, либо явно указанными в {@link SQLTemplate#cacheResult(String...)}. Изменение таблицы через
+ * {@link SQLTemplate#executeQuery()}, {@link SQLTemplate#executeBatch(Iterable)} или
+ * {@link SQLTemplate#executeQuery(SQLTemplate.GeneratedKeyMapper)} удаляет все записи с ее именем.
+ * Изменения, сделанные в обход фабрики, хранимыми процедурами или триггерами, кэш не видит, их нужно
+ * сбрасывать через {@link #invalidate(String...)}; так же поступают с запросами, таблицы которых не
+ * определяются разбором (например, представления).
+ * Внутри транзакционной {@link SQLSession} сброс откладывается до {@link SQLSession#commit()}.
+ * <p>
+ * Сброс увеличивает версию таблицы. Результат, прочитанный до сброса, но записываемый после него, в кэш
+ * не попадает: версии таблиц запоминаются перед выполнением запроса ({@link #stamp(Collection)})
+ * и сверяются при записи.
+ */
+public class QueryResultCache {
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "SELECT", "FROM", "WHERE", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "NATURAL",
+            "STRAIGHT_JOIN", "ON", "USING", "GROUP", "ORDER", "BY", "LIMIT", "OFFSET", "HAVING", "UNION", "EXCEPT",
+            "INTERSECT", "FOR", "WINDOW", "SET", "VALUES", "VALUE", "AS", "PARTITION", "USE", "FORCE", "IGNORE",
+            "LOCK", "INTO", "WITH", "LATERAL", "TABLE", "IF", "EXISTS", "LOW_PRIORITY", "HIGH_PRIORITY", "DELAYED",
+            "QUICK", "PROCEDURE", "DUPLICATE"));
+    private static final Set<String> MODIFIERS = new HashSet<>(Arrays.asList(
+            "LOW_PRIORITY", "HIGH_PRIORITY", "DELAYED", "QUICK", "IGNORE"));
+
+    private final long ttlNanos;
+    private final long maxWeight;
+    private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<QueryKey>> tagIndex = new HashMap<>();
+    private final Map<String, Long> tagVersions = new HashMap<>();
+    private long generation;
+    private final Lock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private long weight;
+
+    public QueryResultCache(long ttl, @Nonnull TimeUnit unit, long maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Max weight must be equals or greater than 1, got " + maxWeight);
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxWeight = maxWeight;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Nullable Object get(@Nonnull QueryKey key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.createdNanos > ttlNanos) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Запоминает текущие версии таблиц; вызывается перед выполнением запроса, результат которого
+     * будет записан через {@link #put(QueryKey, Object, Stamp)}
+     */
+    @Nonnull Stamp stamp(@Nonnull Collection<String> tables) {
+        String[] tags = new String[tables.size()];
+        int i = 0;
+        for (String table : tables) {
+            tags[i++] = normalize(table);
+        }
+        long[] versions = new long[tags.length];
+        lock.lock();
+        try {
+            for (i = 0; i < tags.length; i++) {
+                versions[i] = tagVersions.getOrDefault(tags[i], 0L);
+            }
+            return new Stamp(tags, versions, generation);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает результат, если с момента {@link #stamp(Collection)} ни одна из его таблиц не сбрасывалась
+     */
+    void put(@Nonnull QueryKey key, @Nonnull Object value, @Nonnull Stamp stamp) {
+        long entryWeight = weightOf(value);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        Set<String> tags = new HashSet<>(Arrays.asList(stamp.tags));
+        Entry entry = new Entry(value, entryWeight, tags, System.nanoTime());
+        lock.lock();
+        try {
+            if (stamp.generation != generation) {
+                return;
+            }
+            for (int i = 0; i < stamp.tags.length; i++) {
+                if (tagVersions.getOrDefault(stamp.tags[i], 0L) != stamp.versions[i]) {
+                    return;
+                }
+            }
+            remove(key);
+            entries.put(key, entry);
+            weight += entryWeight;
+            for (String tag : tags) {
+                tagIndex.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+            }
+            Iterator<Map.Entry<QueryKey, Entry>> iterator = entries.entrySet().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                Map.Entry<QueryKey, Entry> eldest = iterator.next();
+                iterator.remove();
+                unregister(eldest.getKey(), eldest.getValue());
+                evictions.increment();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет все записи, прочитанные из указанных таблиц
+     */
+    public void invalidate(@Nonnull String ... tables) {
+        invalidate(Arrays.asList(tables));
+    }
+
+    void invalidate(@Nonnull Collection<String> tables) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (String table : tables) {
+                String tag = normalize(table);
+                tagVersions.merge(tag, 1L, Long::sum);
+                Set<QueryKey> keys = tagIndex.remove(tag);
+                if (keys != null) {
+                    for (QueryKey key : keys) {
+                        if (remove(key)) {
+                            invalidations.increment();
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            tagIndex.clear();
+            tagVersions.clear();
+            generation++;
+            weight = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean remove(QueryKey key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unregister(key, entry);
+        return true;
+    }
+
+    private void unregister(QueryKey key, Entry entry) {
+        weight -= entry.weight;
+        for (String tag : entry.tags) {
+            Set<QueryKey> keys = tagIndex.get(tag);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                tagIndex.remove(tag);
+            }
+        }
+    }
+
+    private static long weightOf(Object value) {
+        return value instanceof Collection ? Math.max(1, ((Collection<?>) value).size()) : 1;
+    }
+
+    /**
+     * Имена таблиц во всех списках {@code FROM} и {@code JOIN} запроса, включая подзапросы и перечисления
+     * через запятую
+     */
+    static @Nonnull Set<String> readTables(@Nonnull String query) {
+        List<String> tokens = tokens(query);
+        Set<String> tables = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (isJoinKeyword(tokens.get(i))) {
+                tableList(tokens, i + 1, tables);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Имена таблиц, изменяемых запросом {@code INSERT}, {@code REPLACE}, {@code UPDATE}, {@code DELETE}
+     * или {@code TRUNCATE}. Для многотабличных {@code UPDATE} и {@code DELETE} возвращаются все таблицы
+     * до {@code SET} или {@code WHERE}: лишний сброс безопасен, пропущенный — нет.
+     */
+    static @Nonnull Set<String> writtenTables(@Nonnull String query) {
+        List<String> tokens = tokens(query);
+        Set<String> tables = new HashSet<>();
+        if (tokens.isEmpty()) {
+            return tables;
+        }
+        int i = skipModifiers(tokens, 1);
+        switch (tokens.get(0).toUpperCase(Locale.ROOT)) {
+            case "INSERT":
+            case "REPLACE":
+                if (i < tokens.size() && "INTO".equalsIgnoreCase(tokens.get(i))) {
+                    i++;
+                }
+                if (i < tokens.size() && isName(tokens.get(i))) {
+                    tables.add(normalize(tokens.get(i)));
+                }
+                break;
+            case "UPDATE":
+                tableList(tokens, i, tables);
+                joinedTables(tokens, i, "SET", tables);
+                break;
+            case "DELETE":
+                tableList(tokens, i, tables);
+                joinedTables(tokens, i, "WHERE", tables);
+                break;
+            case "TRUNCATE":
+                if (i < tokens.size() && "TABLE".equalsIgnoreCase(tokens.get(i))) {
+                    i++;
+                }
+                if (i < tokens.size() && isName(tokens.get(i))) {
+                    tables.add(normalize(tokens.get(i)));
+                }
+                break;
+            default:
+                break;
+        }
+        return tables;
+    }
+
+    private static void joinedTables(List<String> tokens, int from, String until, Set<String> tables) {
+        for (int i = from; i < tokens.size() && !until.equalsIgnoreCase(tokens.get(i)); i++) {
+            if (isJoinKeyword(tokens.get(i)) || "USING".equalsIgnoreCase(tokens.get(i))) {
+                tableList(tokens, i + 1, tables);
+            }
+        }
+    }
+
+    /**
+     * Разбирает перечисление таблиц {@code a [AS] x, b y, (подзапрос) z} начиная с позиции {@code i}.
+     * Подзапросы пропускаются: их {@code FROM} находит вызывающий при проходе по всем лексемам.
+     */
+    private static void tableList(List<String> tokens, int i, Set<String> tables) {
+        while (i < tokens.size()) {
+            String token = tokens.get(i);
+            if ("(".equals(token)) {
+                i = skipParentheses(tokens, i);
+            }
+            else if (isName(token)) {
+                tables.add(normalize(token));
+                i++;
+            }
+            else {
+                return;
+            }
+            if (i < tokens.size() && "AS".equalsIgnoreCase(tokens.get(i))) {
+                i++;
+            }
+            if (i < tokens.size() && isName(tokens.get(i))) {
+                i++;
+            }
+            while (i < tokens.size() && isIndexHint(tokens.get(i))) {
+                while (i < tokens.size() && !"(".equals(tokens.get(i))) {
+                    i++;
+                }
+                i = skipParentheses(tokens, i);
+            }
+            if (i >= tokens.size() || !",".equals(tokens.get(i))) {
+                return;
+            }
+            i++;
+        }
+    }
+
+    private static int skipParentheses(List<String> tokens, int i) {
+        int depth = 0;
+        for (; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if ("(".equals(token)) {
+                depth++;
+            }
+            else if (")".equals(token) && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return i;
+    }
+
+    private static int skipModifiers(List<String> tokens, int i) {
+        while (i < tokens.size() && MODIFIERS.contains(tokens.get(i).toUpperCase(Locale.ROOT))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isJoinKeyword(String token) {
+        return "FROM".equalsIgnoreCase(token) || "JOIN".equalsIgnoreCase(token)
+               || "STRAIGHT_JOIN".equalsIgnoreCase(token);
+    }
+
+    private static boolean isIndexHint(String token) {
+        return "USE".equalsIgnoreCase(token) || "FORCE".equalsIgnoreCase(token) || "IGNORE".equalsIgnoreCase(token);
+    }
+
+    private static boolean isName(String token) {
+        char first = token.charAt(0);
+        return (first == '`' || first == '"' || first == '_' || Character.isLetter(first))
+               && !KEYWORDS.contains(token.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Лексемы запроса: имена (вместе с квалификаторами и кавычками) и символы {@code , ( ) ;}; строковые
+     * литералы, комментарии и прочие символы пропускаются
+     */
+    private static List<String> tokens(String query) {
+        List<String> tokens = new ArrayList<>();
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (c == '\'') {
+                i++;
+                while (i < length && query.charAt(i) != '\'') {
+                    i += query.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            }
+            else if (c == '-' && query.startsWith("--", i) || c == '#') {
+                while (i < length && query.charAt(i) != '\n') {
+                    i++;
+                }
+            }
+            else if (c == '/' && query.startsWith("/*", i)) {
+                int end = query.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            }
+            else if (c == '`' || c == '"' || isNameChar(c)) {
+                int start = i;
+                while (i < length) {
+                    char n = query.charAt(i);
+                    if (n == '`' || n == '"') {
+                        int end = query.indexOf(n, i + 1);
+                        i = end < 0 ? length : end + 1;
+                    }
+                    else if (isNameChar(n) || n == '.' || n == '*' && query.charAt(i - 1) == '.') {
+                        i++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                tokens.add(query.substring(start, i));
+            }
+            else {
+                if (c == ',' || c == '(' || c == ')' || c == ';') {
+                    tokens.add(String.valueOf(c));
+                }
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@';
+    }
+
+    private static String normalize(String table) {
+        String name = table.replace("`", "").replace("\"", "");
+        if (name.endsWith(".*")) {
+            name = name.substring(0, name.length() - 2);
+        }
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    static final class Stamp {
+        private final String[] tags;
+        private final long[] versions;
+        private final long generation;
+
+        private Stamp(String[] tags, long[] versions, long generation) {
+            this.tags = tags;
+            this.versions = versions;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+        private final Set<String> tags;
+        private final long createdNanos;
+
+        private Entry(Object value, long weight, Set<String> tags, long createdNanos) {
+            this.value = value;
+            this.weight = weight;
+            this.tags = tags;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
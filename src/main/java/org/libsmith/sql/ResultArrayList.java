@@ -1,6 +1,5 @@
 package org.libsmith.sql;
 
-import javax.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -15,6 +14,7 @@ public class ResultArrayList<T> extends ArrayList<T> implements ResultList<T> {
     private final Long offset;
     private final Integer limit;
     private final Integer foundRows;
+    private final FoundRowsAccuracy foundRowsAccuracy;
 
     @SuppressWarnings("unused")
     public ResultArrayList() {
@@ -31,10 +31,16 @@ public class ResultArrayList<T> extends ArrayList<T> implements ResultList<T> {
     }
 
     public ResultArrayList(Integer foundRows, Long offset, Integer limit, Collection<? extends T> collection) {
+        this(foundRows, FoundRowsAccuracy.EXACT, offset, limit, collection);
+    }
+
+    public ResultArrayList(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit,
+                           Collection<? extends T> collection) {
         super(collection == null ? Collections.emptyList() : collection);
         this.offset = offset;
         this.limit = limit;
         this.foundRows = foundRows;
+        this.foundRowsAccuracy = foundRowsAccuracy;
     }
 
     @Override
@@ -53,51 +59,7 @@ public class ResultArrayList<T> extends ArrayList<T> implements ResultList<T> {
     }
 
     @Override
-    public T getSingleResultOr(T defaultValue) throws IllegalStateException {
-        int size = size();
-        if (size == 1) {
-            return get(0);
-        }
-        else if (size == 0) {
-            return defaultValue;
-        }
-        //noinspection Contract
-        throw new IllegalStateException();
-    }
-
-    @Override
-    public T getFirstResultOr(T defaultValue) {
-        return isEmpty() ? defaultValue : get(0);
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public @Nonnull <E extends Exception> T getSingleResultOrThrow(Class<E> throwableType) throws E {
-        int size = size();
-        if (size == 1) {
-            return get(0);
-        }
-        else if (size == 0) {
-            try {
-                throw throwableType.newInstance();
-            }
-            catch (IllegalAccessException | InstantiationException ex) {
-                throw (E) ex;
-            }
-        }
-        throw new IllegalStateException();
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public @Nonnull <E extends Exception> T getFirstResultOrThrow(Class<E> throwableType) throws E {
-        if (isEmpty()) {
-            try {
-                throw throwableType.newInstance();
-            } catch (IllegalAccessException | InstantiationException ex) {
-                throw (E) ex;
-            }
-        }
-        return get(0);
+    public FoundRowsAccuracy getFoundRowsAccuracy() {
+        return foundRows == null ? null : foundRowsAccuracy;
     }
 }
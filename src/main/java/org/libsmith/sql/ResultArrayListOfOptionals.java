@@ -26,6 +26,11 @@ public class ResultArrayListOfOptionals<T> extends ResultArrayList<Optional<T>>
         super(foundRows, offset, limit, collection);
     }
 
+    public ResultArrayListOfOptionals(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset,
+                                      Integer limit, Collection<? extends Optional<T>> collection) {
+        super(foundRows, foundRowsAccuracy, offset, limit, collection);
+    }
+
     @Override
     public Optional<T> getFirstResult() {
         return getFirstResultOr(Optional.empty());
@@ -27,6 +27,14 @@ public interface ResultCollection<T> extends Collection<T> {
      */
     @Nullable Integer getFoundRows();
 
+    /**
+     * Возвращает происхождение значения {@link #getFoundRows()}: точный подсчет, значение из кэша или оценку
+     * планировщика; {@code null}, если общее количество строк неизвестно
+     */
+    default @Nullable FoundRowsAccuracy getFoundRowsAccuracy() {
+        return getFoundRows() == null ? null : FoundRowsAccuracy.EXACT;
+    }
+
     /**
      * Возвращает первый элемент из списка или {@code defaultValue}, если это пустая коллекция. В случае, если размер
      * коллекции содержит более одного элемента, то кидается {@link IllegalStateException}
@@ -14,12 +14,19 @@ class ResultCollectionWrapper<T> implements ResultCollection<T> {
     private final Integer foundRows;
     private final Long offset;
     private final Integer limit;
+    private final FoundRowsAccuracy foundRowsAccuracy;
 
     ResultCollectionWrapper(Collection<T> delegate, Integer foundRows, Long offset, Integer limit) {
+        this(delegate, foundRows, FoundRowsAccuracy.EXACT, offset, limit);
+    }
+
+    ResultCollectionWrapper(Collection<T> delegate, Integer foundRows, FoundRowsAccuracy foundRowsAccuracy,
+                            Long offset, Integer limit) {
         this.delegate = delegate;
         this.offset = offset;
         this.limit = limit;
         this.foundRows = foundRows;
+        this.foundRowsAccuracy = foundRowsAccuracy;
     }
 
     @Override
@@ -27,6 +34,11 @@ class ResultCollectionWrapper<T> implements ResultCollection<T> {
         return foundRows;
     }
 
+    @Override
+    public FoundRowsAccuracy getFoundRowsAccuracy() {
+        return foundRows == null ? null : foundRowsAccuracy;
+    }
+
     @Override
     public Long getOffset() {
         return offset;
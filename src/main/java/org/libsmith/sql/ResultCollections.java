@@ -35,4 +35,12 @@ public class ResultCollections {
     public static <T> ResultList<T> singletonList(T object) {
         return wrap(Collections.singletonList(object));
     }
+
+    /**
+     * Неизменяемое представление списка с сохранением общего количества строк, смещения и лимита
+     */
+    public static <T> ResultList<T> unmodifiableList(ResultList<? extends T> list) {
+        return new ResultListWrapper<>(Collections.unmodifiableList(list), list.getFoundRows(),
+                                       list.getFoundRowsAccuracy(), list.getOffset(), list.getLimit());
+    }
 }
@@ -1,5 +1,6 @@
 package org.libsmith.sql;
 
+import javax.annotation.Nonnull;
 import java.util.List;
 
 /**
@@ -7,4 +8,54 @@ import java.util.List;
  * @created 22.01.2015 18:39
  */
 public interface ResultList<T> extends List<T>, ResultCollection<T>
-{ }
+{
+    @Override
+    default T getSingleResultOr(T defaultValue) throws IllegalStateException {
+        int size = size();
+        if (size == 1) {
+            return get(0);
+        }
+        else if (size == 0) {
+            return defaultValue;
+        }
+        //noinspection Contract
+        throw new IllegalStateException();
+    }
+
+    @Override
+    default T getFirstResultOr(T defaultValue) {
+        return isEmpty() ? defaultValue : get(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    default @Nonnull <E extends Exception> T getSingleResultOrThrow(Class<E> throwableType) throws E {
+        int size = size();
+        if (size == 1) {
+            return get(0);
+        }
+        else if (size == 0) {
+            try {
+                throw throwableType.getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException ex) {
+                throw (E) ex;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    default @Nonnull <E extends Exception> T getFirstResultOrThrow(Class<E> throwableType) throws E {
+        if (isEmpty()) {
+            try {
+                throw throwableType.getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException ex) {
+                throw (E) ex;
+            }
+        }
+        return get(0);
+    }
+}
@@ -17,6 +17,12 @@ class ResultListWrapper<T> extends ResultCollectionWrapper<T> implements ResultL
         this.delegate = delegate;
     }
 
+    ResultListWrapper(List<T> delegate, Integer foundRows, FoundRowsAccuracy foundRowsAccuracy,
+                      Long offset, Integer limit) {
+        super(delegate, foundRows, foundRowsAccuracy, offset, limit);
+        this.delegate = delegate;
+    }
+
     @Override
     protected T getFirst() {
         return delegate.get(0);
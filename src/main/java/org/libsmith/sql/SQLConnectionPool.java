@@ -0,0 +1,432 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Легковесный пул соединений поверх непулированного {@link DataSource} (например, на базе
+ * {@link java.sql.DriverManager}). Свободные соединения хранятся в неблокирующем LIFO стеке, размер пула
+ * ограничен семафором. Соединение, использованное не раньше {@code validationInterval} назад, выдается
+ * без проверки {@link Connection#isValid(int)}.
+ * <p>
+ * При возврате в пул незавершенная транзакция откатывается, оставленные открытыми statement'ы закрываются,
+ * а измененные клиентом autocommit, уровень изоляции, readOnly, каталог, схема, holdability и typeMap
+ * восстанавливаются.
+ */
+public class SQLConnectionPool extends SQLTemplate.AbstractDataSource implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(SQLConnectionPool.class.getName());
+
+    public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 500;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final int MAX_TRACKED_STATEMENTS = 64;
+
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final Semaphore capacity;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+    private volatile long validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_VALIDATION_INTERVAL_MILLIS);
+    private volatile long borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BORROW_TIMEOUT_MILLIS);
+    private volatile boolean closed;
+
+    public SQLConnectionPool(@Nonnull DataSource dataSource, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be equals or greater than 1, got " + maxSize);
+        }
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.capacity = new Semaphore(maxSize);
+    }
+
+    /**
+     * Интервал после последнего использования, в течение которого соединение выдается без проверки
+     */
+    public SQLConnectionPool validationInterval(long validationInterval, @Nonnull TimeUnit unit) {
+        this.validationIntervalNanos = unit.toNanos(validationInterval);
+        return this;
+    }
+
+    public SQLConnectionPool borrowTimeout(long borrowTimeout, @Nonnull TimeUnit unit) {
+        this.borrowTimeoutNanos = unit.toNanos(borrowTimeout);
+        return this;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!capacity.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timeout while waiting for connection from pool of size " + maxSize);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection from pool", ex);
+        }
+        long waited = System.nanoTime() - start;
+        borrows.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        try {
+            return borrow().proxy();
+        }
+        catch (SQLException | RuntimeException | Error ex) {
+            capacity.release();
+            throw ex;
+        }
+    }
+
+    private PooledConnection borrow() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pooled.lastUsedNanos < validationIntervalNanos) {
+                return pooled;
+            }
+            validations.increment();
+            if (isValid(pooled.connection)) {
+                return pooled;
+            }
+            discard(pooled.connection);
+        }
+        Connection connection = dataSource.getConnection();
+        openConnections.incrementAndGet();
+        return new PooledConnection(connection);
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            Connection connection = pooled.connection;
+            if (!closed && !connection.isClosed()) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                pooled.reset();
+                pooled.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(pooled);
+            }
+            else {
+                discard(connection);
+            }
+        }
+        catch (SQLException | RuntimeException ex) {
+            LOG.log(Level.FINE, "Exception catched (and ignored) at connection release, connection discarded", ex);
+            discard(pooled.connection);
+        }
+        finally {
+            capacity.release();
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        }
+        catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        openConnections.decrementAndGet();
+        try {
+            connection.close();
+        }
+        catch (SQLException ex) {
+            LOG.log(Level.FINE, "Exception catched (and ignored) at connection close", ex);
+        }
+    }
+
+    /**
+     * Закрывает свободные соединения; выданные соединения закрываются при возврате в пул
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled.connection);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    public long getTotalWaitTime(@Nonnull TimeUnit unit) {
+        return unit.convert(waitNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWaitTime(@Nonnull TimeUnit unit) {
+        return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getValidationCount() {
+        return validations.sum();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    /**
+     * Свойства соединения, которые клиент может изменить и которые восстанавливаются при возврате в пул
+     */
+    private enum Property {
+        TRANSACTION_ISOLATION("setTransactionIsolation") {
+            @Override
+            Object get(Connection connection) throws SQLException {
+                return connection.getTransactionIsolation();
+            }
+
+            @Override
+            void set(Connection connection, Object value) throws SQLException {
+                connection.setTransactionIsolation((Integer) value);
+            }
+        },
+        READ_ONLY("setReadOnly") {
+            @Override
+            Object get(Connection connection) throws SQLException {
+                return connection.isReadOnly();
+            }
+
+            @Override
+            void set(Connection connection, Object value) throws SQLException {
+                connection.setReadOnly((Boolean) value);
+            }
+        },
+        CATALOG("setCatalog") {
+            @Override
+            Object get(Connection connection) throws SQLException {
+                return connection.getCatalog();
+            }
+
+            @Override
+            void set(Connection connection, Object value) throws SQLException {
+                connection.setCatalog((String) value);
+            }
+        },
+        SCHEMA("setSchema") {
+            @Override
+            Object get(Connection connection) throws SQLException {
+                return connection.getSchema();
+            }
+
+            @Override
+            void set(Connection connection, Object value) throws SQLException {
+                connection.setSchema((String) value);
+            }
+        },
+        HOLDABILITY("setHoldability") {
+            @Override
+            Object get(Connection connection) throws SQLException {
+                return connection.getHoldability();
+            }
+
+            @Override
+            void set(Connection connection, Object value) throws SQLException {
+                connection.setHoldability((Integer) value);
+            }
+        },
+        TYPE_MAP("setTypeMap") {
+            @Override
+            Object get(Connection connection) throws SQLException {
+                return connection.getTypeMap();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            void set(Connection connection, Object value) throws SQLException {
+                connection.setTypeMap((Map<String, Class<?>>) value);
+            }
+        };
+
+        private static final Map<String, Property> BY_SETTER = new HashMap<>();
+        static {
+            for (Property property : values()) {
+                BY_SETTER.put(property.setter, property);
+            }
+        }
+
+        private final String setter;
+
+        Property(String setter) {
+            this.setter = setter;
+        }
+
+        abstract Object get(Connection connection) throws SQLException;
+
+        abstract void set(Connection connection, Object value) throws SQLException;
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private final Map<Property, Object> defaults = new EnumMap<>(Property.class);
+        private final List<Statement> statements = new ArrayList<>();
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Запоминает исходное значение свойства перед первым его изменением клиентом
+         */
+        private void beforeChange(Property property) throws SQLException {
+            if (!defaults.containsKey(property)) {
+                defaults.put(property, property.get(connection));
+            }
+        }
+
+        private void opened(Statement statement) throws SQLException {
+            if (statements.size() >= MAX_TRACKED_STATEMENTS) {
+                for (Iterator<Statement> iterator = statements.iterator(); iterator.hasNext(); ) {
+                    if (iterator.next().isClosed()) {
+                        iterator.remove();
+                    }
+                }
+            }
+            statements.add(statement);
+        }
+
+        /**
+         * Закрывает оставленные клиентом statement'ы, возвращает соединению исходные значения измененных
+         * клиентом свойств и сбрасывает предупреждения, чтобы ничего из этого не досталось следующему клиенту
+         */
+        private void reset() throws SQLException {
+            for (Statement statement : statements) {
+                if (!statement.isClosed()) {
+                    statement.close();
+                }
+            }
+            statements.clear();
+            for (Map.Entry<Property, Object> entry : defaults.entrySet()) {
+                entry.getKey().set(connection, entry.getValue());
+            }
+            defaults.clear();
+            connection.clearWarnings();
+        }
+
+        private Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(SQLConnectionPool.class.getClassLoader(),
+                                                       new Class<?>[] { Connection.class },
+                                                       new LogicalConnection(this));
+        }
+    }
+
+    /**
+     * Логическое соединение, выданное клиенту; {@code close()} возвращает физическое соединение в пул,
+     * {@code unwrap(Connection.class)} возвращает физическое соединение
+     */
+    private final class LogicalConnection implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        private LogicalConnection(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.connection.isClosed();
+                case "unwrap":
+                    if (args[0] == Connection.class) {
+                        return pooled.connection;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            Property property = Property.BY_SETTER.get(method.getName());
+            if (property != null) {
+                pooled.beforeChange(property);
+            }
+            Object result;
+            try {
+                result = method.invoke(pooled.connection, args);
+            }
+            catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            if (result instanceof Statement) {
+                pooled.opened((Statement) result);
+            }
+            return result;
+        }
+    }
+}
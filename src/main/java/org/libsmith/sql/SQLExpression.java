@@ -46,6 +46,7 @@ public class SQLExpression implements SQLFragment, SQLTemplate.KnownMeaningOfLif
     private StringBuilder queryBuilder = new StringBuilder();
     private List<Object> values = new ArrayList<>();
     private BuildParameters bp;
+    private InListBucketing inListBucketing;
     private int modCount = 1;
 
     public SQLExpression () {
@@ -153,6 +154,14 @@ public class SQLExpression implements SQLFragment, SQLTemplate.KnownMeaningOfLif
         return or().value(subExpression);
     }
 
+    /**
+     * Включает дополнение списков {@code IN} до фиксированных размеров, см. {@link InListBucketing}
+     */
+    public SQLExpression inListBucketing(InListBucketing inListBucketing) {
+        this.inListBucketing = inListBucketing;
+        return this;
+    }
+
     @Override
     public SQLExpression withMeaningOfLife() {
         this.meaningOfLife = 42;
@@ -283,28 +292,22 @@ public class SQLExpression implements SQLFragment, SQLTemplate.KnownMeaningOfLif
                     }
                 }
                 else if (bp.comparator == Comparator.IN) {
-                    boolean delimiterFlag = false;
+                    int count = 0;
                     queryBuilder.append("(");
                     if (bp.value instanceof Iterable) {
                         for (Object element : (Iterable) bp.value) {
-                            if (delimiterFlag) {
+                            if (count++ > 0) {
                                 queryBuilder.append(", ");
                             }
-                            else {
-                                delimiterFlag = true;
-                            }
                             queryBuilder.append("?");
                             values.add(element instanceof SQLValue ? ((SQLValue) element).getSQLValueEntity() : element);
                         }
                     }
                     else if (bp.value.getClass().isArray()) {
                         for (int i = 0, l = Array.getLength(bp.value); i < l; i++) {
-                            if (delimiterFlag) {
+                            if (count++ > 0) {
                                 queryBuilder.append(", ");
                             }
-                            else {
-                                delimiterFlag = true;
-                            }
                             queryBuilder.append("?");
                             Object element = Array.get(bp.value, i);
                             values.add(element instanceof SQLValue ? ((SQLValue) element).getSQLValueEntity() : element);
@@ -313,9 +316,17 @@ public class SQLExpression implements SQLFragment, SQLTemplate.KnownMeaningOfLif
                     else {
                         throw new IllegalArgumentException();
                     }
-                    if (!delimiterFlag) {
+                    if (count == 0) {
                         queryBuilder.append("NULL");
                     }
+                    else if (inListBucketing != null) {
+                        InListBucketing padding = bp.not ? InListBucketing.REPEAT_LAST : inListBucketing;
+                        Object padValue = padding.padValue(values.get(values.size() - 1));
+                        for (int i = count, bucketSize = InListBucketing.bucketSize(count); i < bucketSize; i++) {
+                            queryBuilder.append(", ?");
+                            values.add(padValue);
+                        }
+                    }
                     queryBuilder.append(")");
                 }
                 else {
@@ -354,7 +365,7 @@ public class SQLExpression implements SQLFragment, SQLTemplate.KnownMeaningOfLif
                         : prettyIndentation == null
                             ? null
                             : prettyIndentation + "  ";
-        return new SQLExpression(newIndentation, bp.clone());
+        return new SQLExpression(newIndentation, bp.clone()).inListBucketing(inListBucketing);
     }
 
     public static final class BuildParameters implements Cloneable {
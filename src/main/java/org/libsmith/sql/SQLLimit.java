@@ -2,6 +2,7 @@ package org.libsmith.sql;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -12,25 +13,48 @@ import java.util.List;
 public class SQLLimit implements SQLFragment {
     private final Long offset;
     private final Integer limit;
+    private final boolean parameterized;
 
     public SQLLimit(@Nullable Long offset, @Nullable Integer limit) {
-        this.offset = offset;
-        this.limit = limit;
+        this(offset, limit, false);
     }
 
     public SQLLimit(@Nullable Integer offset, @Nullable Integer limit) {
-        this.offset = offset == null ? null : offset.longValue();
+        this(offset == null ? null : offset.longValue(), limit, false);
+    }
+
+    /**
+     * @param parameterized если {@code true}, то смещение и ограничение передаются параметрами запроса
+     *                      ({@code ?, ?}), и текст запроса не зависит от номера страницы
+     */
+    public SQLLimit(@Nullable Long offset, @Nullable Integer limit, boolean parameterized) {
+        this.offset = offset;
         this.limit = limit;
+        this.parameterized = parameterized;
+    }
+
+    public static SQLLimit parameterized(@Nullable Long offset, @Nullable Integer limit) {
+        return new SQLLimit(offset, limit, true);
+    }
+
+    public static SQLLimit parameterized(@Nullable Integer offset, @Nullable Integer limit) {
+        return new SQLLimit(offset == null ? null : offset.longValue(), limit, true);
     }
 
     @Override
     public @Nonnull String getFragment() {
+        if (parameterized) {
+            return "?, ?";
+        }
         int limit = this.limit == null ? Integer.MAX_VALUE : this.limit;
         return offset == null ? Integer.toString(limit) : (offset + ", " + limit);
     }
 
     @Override
     public @Nonnull List<Object> getParameters () {
+        if (parameterized) {
+            return Arrays.asList(offset == null ? 0L : offset, limit == null ? Integer.MAX_VALUE : limit);
+        }
         return Collections.emptyList();
     }
 
@@ -41,4 +65,8 @@ public class SQLLimit implements SQLFragment {
     public Long getOffset() {
         return offset;
     }
+
+    public boolean isParameterized() {
+        return parameterized;
+    }
 }
@@ -7,12 +7,22 @@ import org.libsmith.sql.SQLTemplate.OptionalMapper;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.sql.Date;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -420,14 +430,373 @@ public abstract class SQLMappers {
     public static final Mapper<Map<String, Object>> ROW_TO_MAP = new Mapper<Map<String, Object>>() {
         @Override
         public @Nonnull Map<String, Object> map(@Nonnull ExtendedResultSet resultSet) throws SQLException {
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            Map<String, Object> row = new HashMap<>();
-            for (int i = 0, size = metaData.getColumnCount(); i < size; i++) {
-                String columnLabel = metaData.getColumnLabel(i + 1);
+            int size = resultSet.getColumnCount();
+            Map<String, Object> row = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                String columnLabel = resultSet.getColumnLabel(i + 1);
                 Object value = resultSet.getObject(i + 1);
                 row.put(columnLabel, value);
             }
             return row;
         }
     };
+
+    /**
+     * Строка как массив значений колонок в порядке их следования, см. {@link SpillingResultList#OBJECT_ARRAY_CODEC}
+     */
+    public static final Mapper<Object[]> ROW_TO_ARRAY = new Mapper<Object[]>() {
+        @Override
+        public @Nonnull Object[] map(@Nonnull ExtendedResultSet resultSet) throws SQLException {
+            Object[] row = new Object[resultSet.getColumnCount()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = resultSet.getObject(i + 1);
+            }
+            return row;
+        }
+    };
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<Class<?>, Mapper<?>> BEAN_MAPPERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Mapper<?>> RECORD_MAPPERS = new ConcurrentHashMap<>();
+
+    /**
+     * Маппер строки в JavaBean: объект создается конструктором без параметров, значения колонок передаются
+     * в setter'ы, имена которых совпадают с метками колонок без учета регистра и символов подчеркивания
+     * ({@code user_id} &rarr; {@code setUserId}). Колонки без setter'а пропускаются, {@code NULL} для свойств
+     * примитивного типа оставляет значение по умолчанию. Привязка колонок к setter'ам строится один раз
+     * для каждого набора меток, setter'ы вызываются через сгенерированные {@link LambdaMetafactory} лямбды.
+     * Класс бина может быть непубличным; из перегруженных setter'ов выбирается setter поддерживаемого типа.
+     * Перечисления читаются по имени константы или, для {@link SQLValue}, по ее значению; {@code java.time},
+     * {@link UUID} и другие типы — через {@link ExtendedResultSet#getObject(int, Class)}. Setter неподдерживаемого
+     * типа для имеющейся колонки приводит к {@link IllegalArgumentException} при первом чтении такого набора колонок.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Mapper<T> beanMapper(@Nonnull Class<T> type) {
+        return (Mapper<T>) BEAN_MAPPERS.computeIfAbsent(type, BeanMapper::new);
+    }
+
+    /**
+     * Маппер строки в record: значения колонок, метки которых совпадают с именами компонент без учета регистра
+     * и символов подчеркивания, передаются в канонический конструктор; компоненты без колонки получают
+     * {@code null} или значение по умолчанию примитивного типа. Типы компонент читаются так же, как свойства
+     * в {@link #beanMapper(Class)}; неподдерживаемый тип приводит к {@link IllegalArgumentException} сразу.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Mapper<T> recordMapper(@Nonnull Class<T> type) {
+        return (Mapper<T>) RECORD_MAPPERS.computeIfAbsent(type, RecordMapper::new);
+    }
+
+    private static String propertyKey(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Маппер с привязкой колонок, которая строится по меткам колонок один раз для каждого их набора
+     */
+    private static abstract class PropertyMapper<T, B> implements Mapper<T> {
+        private final Map<List<String>, B> bindings = new ConcurrentHashMap<>();
+        private volatile Shape<B> lastShape;
+
+        @Override
+        public @Nonnull T map(@Nonnull ExtendedResultSet resultSet) throws SQLException {
+            String[] labels = resultSet.getColumnLabels();
+            Shape<B> shape = lastShape;
+            if (shape == null || shape.labels != labels) {
+                shape = new Shape<>(labels, bindings.computeIfAbsent(Arrays.asList(labels), key -> bind(labels)));
+                lastShape = shape;
+            }
+            try {
+                return map(resultSet, shape.binding);
+            }
+            catch (SQLException | RuntimeException | Error ex) {
+                throw ex;
+            }
+            catch (Throwable ex) {
+                throw new SQLException(ex);
+            }
+        }
+
+        protected abstract B bind(String[] labels);
+
+        protected abstract T map(ExtendedResultSet resultSet, B binding) throws Throwable;
+
+        private static final class Shape<B> {
+            private final String[] labels;
+            private final B binding;
+
+            private Shape(String[] labels, B binding) {
+                this.labels = labels;
+                this.binding = binding;
+            }
+        }
+    }
+
+    private static final class BeanMapper<T> extends PropertyMapper<T, BeanMapper.Writer[]> {
+        private final Class<T> type;
+        private final Instantiator instantiator;
+        private final Map<String, Method> setters = new HashMap<>();
+
+        private BeanMapper(Class<?> type) {
+            @SuppressWarnings("unchecked")
+            Class<T> beanType = (Class<T>) type;
+            this.type = beanType;
+            try {
+                Constructor<T> constructor = beanType.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+                Instantiator instantiator = !Modifier.isPublic(constructor.getModifiers()) ? null
+                        : lambda(Instantiator.class, "newInstance", MethodType.methodType(Object.class),
+                                 handle, MethodType.methodType(beanType), beanType);
+                this.instantiator = instantiator != null ? instantiator : handle::invoke;
+            }
+            catch (NoSuchMethodException | IllegalAccessException | RuntimeException ex) {
+                throw new IllegalArgumentException("No accessible no-arg constructor in " + type, ex);
+            }
+            for (Method method : beanType.getMethods()) {
+                if (method.getName().length() > 3 && method.getName().startsWith("set") && !method.isBridge()
+                        && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                    setters.merge(propertyKey(method.getName().substring(3)), method, BeanMapper::preferredSetter);
+                }
+            }
+        }
+
+        /**
+         * Выбор из перегруженных setter'ов одного свойства, не зависящий от порядка {@link Class#getMethods()}:
+         * setter поддерживаемого типа, среди нескольких таких — с более конкретным, затем с меньшим по имени
+         * типом параметра
+         */
+        private static Method preferredSetter(Method a, Method b) {
+            Class<?> aType = a.getParameterTypes()[0];
+            Class<?> bType = b.getParameterTypes()[0];
+            boolean aSupported = isPropertyTypeSupported(aType);
+            if (aSupported != isPropertyTypeSupported(bType)) {
+                return aSupported ? a : b;
+            }
+            if (aType.isAssignableFrom(bType) != bType.isAssignableFrom(aType)) {
+                return aType.isAssignableFrom(bType) ? b : a;
+            }
+            return aType.getName().compareTo(bType.getName()) <= 0 ? a : b;
+        }
+
+        @Override
+        protected Writer[] bind(String[] labels) {
+            Writer[] writers = new Writer[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                Method setter = setters.get(propertyKey(labels[i]));
+                if (setter != null) {
+                    try {
+                        writers[i] = writer(setter);
+                    }
+                    catch (IllegalAccessException | SecurityException ex) {
+                        throw new IllegalArgumentException("Setter " + setter + " is not accessible", ex);
+                    }
+                }
+            }
+            return writers;
+        }
+
+        @Override
+        protected T map(ExtendedResultSet resultSet, Writer[] writers) throws Throwable {
+            T bean = type.cast(instantiator.newInstance());
+            for (int i = 0; i < writers.length; i++) {
+                if (writers[i] != null) {
+                    writers[i].write(bean, resultSet, i + 1);
+                }
+            }
+            return bean;
+        }
+
+        private Writer writer(Method setter) throws IllegalAccessException {
+            Class<?> valueType = setter.getParameterTypes()[0];
+            setter.setAccessible(true);
+            MethodHandle handle = LOOKUP.unreflect(setter);
+            if (valueType == int.class) {
+                IntSetter intSetter = lambda(IntSetter.class, "set", MethodType.methodType(void.class, Object.class, int.class),
+                                             handle, MethodType.methodType(void.class, type, int.class),
+                                             type, setter.getDeclaringClass());
+                IntSetter target = intSetter != null ? intSetter : handle::invoke;
+                return (bean, resultSet, column) -> {
+                    int value = resultSet.getInt(column);
+                    if (!resultSet.wasNull()) {
+                        target.set(bean, value);
+                    }
+                };
+            }
+            else if (valueType == long.class) {
+                LongSetter longSetter = lambda(LongSetter.class, "set", MethodType.methodType(void.class, Object.class, long.class),
+                                               handle, MethodType.methodType(void.class, type, long.class),
+                                               type, setter.getDeclaringClass());
+                LongSetter target = longSetter != null ? longSetter : handle::invoke;
+                return (bean, resultSet, column) -> {
+                    long value = resultSet.getLong(column);
+                    if (!resultSet.wasNull()) {
+                        target.set(bean, value);
+                    }
+                };
+            }
+            else if (valueType == double.class) {
+                DoubleSetter doubleSetter = lambda(DoubleSetter.class, "set", MethodType.methodType(void.class, Object.class, double.class),
+                                                   handle, MethodType.methodType(void.class, type, double.class),
+                                                   type, setter.getDeclaringClass());
+                DoubleSetter target = doubleSetter != null ? doubleSetter : handle::invoke;
+                return (bean, resultSet, column) -> {
+                    double value = resultSet.getDouble(column);
+                    if (!resultSet.wasNull()) {
+                        target.set(bean, value);
+                    }
+                };
+            }
+            Class<?> boxedType = MethodType.methodType(valueType).wrap().returnType();
+            ColumnMapper<?> columnMapper = propertyColumnMapper(boxedType, setter);
+            ObjectSetter objectSetter = lambda(ObjectSetter.class, "set", MethodType.methodType(void.class, Object.class, Object.class),
+                                               handle, MethodType.methodType(void.class, type, boxedType),
+                                               type, setter.getDeclaringClass(), valueType);
+            ObjectSetter target = objectSetter != null ? objectSetter : handle::invoke;
+            boolean primitive = valueType.isPrimitive();
+            return (bean, resultSet, column) -> {
+                Object value = columnMapper.map(resultSet, column);
+                if (value != null || !primitive) {
+                    target.set(bean, value);
+                }
+            };
+        }
+
+        private interface Writer {
+            void write(Object bean, ExtendedResultSet resultSet, int column) throws Throwable;
+        }
+    }
+
+    private static final class RecordMapper<T> extends PropertyMapper<T, int[]> {
+        private final String[] componentKeys;
+        private final ColumnMapper<?>[] columnMappers;
+        private final Object[] defaults;
+        private final MethodHandle constructor;
+
+        private RecordMapper(Class<?> type) {
+            try {
+                if (!(Boolean) Class.class.getMethod("isRecord").invoke(type)) {
+                    throw new IllegalArgumentException(type + " is not a record");
+                }
+                Object[] components = (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+                componentKeys = new String[components.length];
+                columnMappers = new ColumnMapper<?>[components.length];
+                defaults = new Object[components.length];
+                Class<?>[] componentTypes = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    Class<?> componentClass = components[i].getClass();
+                    componentKeys[i] = propertyKey((String) componentClass.getMethod("getName").invoke(components[i]));
+                    componentTypes[i] = (Class<?>) componentClass.getMethod("getType").invoke(components[i]);
+                    columnMappers[i] = propertyColumnMapper(componentTypes[i], components[i]);
+                    if (componentTypes[i].isPrimitive()) {
+                        defaults[i] = java.lang.reflect.Array.get(java.lang.reflect.Array.newInstance(componentTypes[i], 1), 0);
+                    }
+                }
+                Constructor<?> canonical = type.getDeclaredConstructor(componentTypes);
+                canonical.setAccessible(true);
+                constructor = LOOKUP.unreflectConstructor(canonical).asSpreader(Object[].class, components.length);
+            }
+            catch (NoSuchMethodException ex) {
+                throw new UnsupportedOperationException("Records are not supported by this runtime", ex);
+            }
+            catch (IllegalAccessException | InvocationTargetException ex) {
+                throw new IllegalArgumentException("Canonical constructor of " + type + " is not accessible", ex);
+            }
+        }
+
+        @Override
+        protected int[] bind(String[] labels) {
+            int[] columns = new int[componentKeys.length];
+            for (int i = 0; i < componentKeys.length; i++) {
+                for (int j = 0; j < labels.length; j++) {
+                    if (componentKeys[i].equals(propertyKey(labels[j]))) {
+                        columns[i] = j + 1;
+                        break;
+                    }
+                }
+            }
+            return columns;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected T map(ExtendedResultSet resultSet, int[] columns) throws Throwable {
+            Object[] arguments = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                Object value = columns[i] == 0 ? null : columnMappers[i].map(resultSet, columns[i]);
+                arguments[i] = value == null ? defaults[i] : value;
+            }
+            return (T) constructor.invoke(arguments);
+        }
+    }
+
+    /**
+     * Чтение колонки в свойство типа {@code type}: перечисления — по имени ({@link EnumMapper}) или по значению
+     * {@link SQLValue} ({@link SQLValueEnumMapper}), остальное — через {@link ExtendedResultSet#getObject(int, Class)}
+     *
+     * @param property setter или компонента record'а, для сообщения об ошибке
+     * @throws IllegalArgumentException если значение такого типа из колонки не читается
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static ColumnMapper<?> propertyColumnMapper(Class<?> type, Object property) {
+        if (type.isEnum()) {
+            return SQLValue.class.isAssignableFrom(type) ? SQLValueEnumMapper.of((Class) type)
+                                                         : EnumMapper.of((Class) type);
+        }
+        if (!ExtendedResultSet.isObjectTypeSupported(type)) {
+            throw new IllegalArgumentException("Unsupported type " + type.getName() + " of " + property);
+        }
+        return (resultSet, columnIndex) -> resultSet.getObject(columnIndex, type);
+    }
+
+    private static boolean isPropertyTypeSupported(Class<?> type) {
+        return type.isEnum() || ExtendedResultSet.isObjectTypeSupported(type);
+    }
+
+    /**
+     * Создает реализацию функционального интерфейса через {@link LambdaMetafactory}; {@code null}, если
+     * какой-либо из {@code types} не публичный, не виден из загрузчика библиотеки или сгенерировать лямбду
+     * не удалось, тогда вызывающий использует {@link MethodHandle} напрямую
+     */
+    private static <F> F lambda(Class<F> functionalInterface, String methodName, MethodType samMethodType,
+                                MethodHandle implementation, MethodType instantiatedMethodType, Class<?> ... types) {
+        try {
+            for (Class<?> type : types) {
+                Class<?> elementType = type;
+                while (elementType.isArray()) {
+                    elementType = elementType.getComponentType();
+                }
+                if (!elementType.isPrimitive()
+                        && (!Modifier.isPublic(elementType.getModifiers())
+                            || Class.forName(elementType.getName(), false, SQLMappers.class.getClassLoader()) != elementType)) {
+                    return null;
+                }
+            }
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, methodName, MethodType.methodType(functionalInterface),
+                                                              samMethodType, implementation, instantiatedMethodType);
+            return functionalInterface.cast(callSite.getTarget().invoke());
+        }
+        catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    private interface Instantiator {
+        Object newInstance() throws Throwable;
+    }
+
+    private interface IntSetter {
+        void set(Object bean, int value) throws Throwable;
+    }
+
+    private interface LongSetter {
+        void set(Object bean, long value) throws Throwable;
+    }
+
+    private interface DoubleSetter {
+        void set(Object bean, double value) throws Throwable;
+    }
+
+    private interface ObjectSetter {
+        void set(Object bean, Object value) throws Throwable;
+    }
 }
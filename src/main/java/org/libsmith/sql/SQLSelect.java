@@ -3,6 +3,7 @@ package org.libsmith.sql;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * @author Dmitriy Balakin <dmitriy.balakin@0x0000.ru>
@@ -24,6 +25,7 @@ public class SQLSelect implements SQLFragment {
         SQL_CALC_FOUND_ROWS;
 
         public static final ExtendedResultSet.AttachmentKey<Integer> FOUND_ROWS_ATTACHMENT_KEY = new ExtendedResultSet.AttachmentKey<>();
+        public static final ExtendedResultSet.AttachmentKey<FoundRowsAccuracy> FOUND_ROWS_ACCURACY_ATTACHMENT_KEY = new ExtendedResultSet.AttachmentKey<>();
 
         @Override
         public @Nonnull String getFragment() {
@@ -36,6 +38,10 @@ public class SQLSelect implements SQLFragment {
         }
     }
 
+    static final Pattern AGGREGATE = Pattern.compile(
+            "(?i)\\b(?:COUNT|SUM|MIN|MAX|AVG|GROUP_CONCAT|JSON_ARRAYAGG|JSON_OBJECTAGG|BIT_AND|BIT_OR|BIT_XOR"
+            + "|STD|STDDEV|STDDEV_POP|STDDEV_SAMP|VARIANCE|VAR_POP|VAR_SAMP)\\s*\\(");
+
     private final Map<Object, List<String>> columnsByQualifierMap = new HashMap<>();
     private List<Object> qualifiers;
 
@@ -80,6 +86,45 @@ public class SQLSelect implements SQLFragment {
         return qualifiers(qualifiers == null ? null : Arrays.asList(qualifiers));
     }
 
+    /**
+     * Возвращает копию, в которой нет подсказки {@code selectHint}
+     */
+    public SQLSelect without(@Nonnull SelectHint selectHint) {
+        SQLSelect copy = new SQLSelect();
+        for (Map.Entry<Object, List<String>> entry : columnsByQualifierMap.entrySet()) {
+            copy.columnsByQualifierMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        if (qualifiers != null) {
+            copy.qualifiers = new ArrayList<>(qualifiers);
+            copy.qualifiers.removeIf(selectHint::equals);
+        }
+        return copy;
+    }
+
+    /**
+     * Возвращает копию с теми же подсказками и константой вместо списка колонок — для подсчета строк в подзапросе.
+     * Список колонок сохраняется, если от него зависит количество строк ({@code DISTINCT} или агрегатные функции)
+     */
+    SQLSelect forCount() {
+        SQLSelect copy = without(MySQLHint.SQL_CALC_FOUND_ROWS);
+        if (!contains(MySQLHint.DISTINCT) && !hasAggregates()) {
+            copy.columnsByQualifierMap.clear();
+            copy.columnsByQualifierMap.put(null, new ArrayList<>(Collections.singletonList("1")));
+        }
+        return copy;
+    }
+
+    private boolean hasAggregates() {
+        for (List<String> columns : columnsByQualifierMap.values()) {
+            for (String column : columns) {
+                if (AGGREGATE.matcher(column).find()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     protected boolean contains(SelectHint selectHint) {
         return qualifiers != null && qualifiers.contains(selectHint);
     }
@@ -0,0 +1,152 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Единица работы, выполняющая шаблоны на одном соединении и, при необходимости, в одной транзакции.
+ * Statement'ы переиспользуются в пределах сессии и закрываются вместе с ней. Сессия не потокобезопасна.
+ * <pre>
+ *     try (SQLSession session = factory.openSession(true)) {
+ *         session.template("UPDATE ...").parameter(...).executeQuery();
+ *         session.template("INSERT ...").parameter(...).executeQuery();
+ *         session.commit();
+ *     }
+ * </pre>
+ */
+public class SQLSession implements AutoCloseable {
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final SQLTemplateFactory factory;
+    private final ConnectionLease connectionLease;
+    private final StatementCache statementCache;
+    private final boolean transactional;
+    private final boolean restoreAutoCommit;
+    private final Set<String> uncommittedTables = new HashSet<>();
+    private QueryResultCache uncommittedResultCache;
+    private boolean closed;
+
+    SQLSession(@Nonnull SQLTemplateFactory factory, boolean transactional) throws SQLException {
+        this.factory = factory;
+        this.transactional = transactional;
+        StatementCache factoryStatementCache = factory.getStatementCache();
+        this.statementCache = new StatementCache(factoryStatementCache == null
+                                                         ? DEFAULT_STATEMENT_CACHE_SIZE
+                                                         : factoryStatementCache.getMaxStatementsPerConnection());
+        this.connectionLease = ConnectionLease.open(factory.getDataSource(), false, factory.getConnectionPermits());
+        boolean restoreAutoCommit = false;
+        if (transactional) {
+            try {
+                Connection connection = connectionLease.getConnection();
+                if (connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                    restoreAutoCommit = true;
+                }
+            }
+            catch (SQLException | RuntimeException ex) {
+                try {
+                    connectionLease.close();
+                }
+                catch (SQLException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+                throw ex;
+            }
+        }
+        this.restoreAutoCommit = restoreAutoCommit;
+    }
+
+    public @Nonnull SQLTemplate template(@Nonnull String query) {
+        return template(factory.prepare(query));
+    }
+
+    public @Nonnull SQLTemplate template(@Nonnull PreparedTemplate preparedTemplate) {
+        checkNotClosed();
+        return new SQLTemplate(preparedTemplate, this);
+    }
+
+    public int execute(@Nonnull String query) throws SQLException {
+        return template(query).executeQuery();
+    }
+
+    public void commit() throws SQLException {
+        checkNotClosed();
+        connectionLease.getConnection().commit();
+        if (uncommittedResultCache != null) {
+            uncommittedResultCache.invalidate(uncommittedTables);
+            uncommittedTables.clear();
+            uncommittedResultCache = null;
+        }
+    }
+
+    public void rollback() throws SQLException {
+        checkNotClosed();
+        connectionLease.getConnection().rollback();
+        uncommittedTables.clear();
+        uncommittedResultCache = null;
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    public @Nonnull StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Сбрасывает записи кэша результатов по измененным таблицам; в транзакции — только после фиксации,
+     * иначе другие соединения успели бы до нее снова положить в кэш старые данные
+     */
+    void invalidateResultCache(@Nonnull QueryResultCache resultCache, @Nonnull Collection<String> tables) {
+        if (!transactional) {
+            resultCache.invalidate(tables);
+            return;
+        }
+        uncommittedResultCache = resultCache;
+        uncommittedTables.addAll(tables);
+    }
+
+    @Nonnull ConnectionLease leaseConnection(boolean readOnly) throws SQLException {
+        checkNotClosed();
+        return ConnectionLease.shared(connectionLease.getConnection(), readOnly);
+    }
+
+    /**
+     * Закрывает statement'ы сессии и возвращает соединение; незафиксированная транзакция откатывается
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        statementCache.clear();
+        try {
+            if (transactional) {
+                Connection connection = connectionLease.getConnection();
+                try {
+                    connection.rollback();
+                }
+                finally {
+                    if (restoreAutoCommit) {
+                        connection.setAutoCommit(true);
+                    }
+                }
+            }
+        }
+        finally {
+            connectionLease.close();
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+    }
+}
@@ -7,36 +7,91 @@ import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author Dmitriy Balakin <dmitriy.balakin@0x0000.ru>
  * @created 14.02.2015 20:00
  */
 public class SQLTemplate {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
     private static final Logger LOG = Logger.getLogger(SQLTemplate.class.getName());
 
-    private final Map<String, Object> parameterMap = new HashMap<>();
-    private final List<SQLFragment> epilogueList = new ArrayList<>();
-    private final String template;
-    private final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\B\\\\?:(\\w+)");
+    private static final Object UNSET = new Object();
+    private static final SQLFragment FOUND_ROWS_QUERY = SQLFragment.Impl.of("SELECT FOUND_ROWS()");
+    private static final Pattern EXPLAIN_ROWS_PATTERN = Pattern.compile("\\brows=(\\d+)");
+    private static final Pattern ORDER_OR_LIMIT_CLAUSE = Pattern.compile("(?i)\\s*\\b(?:ORDER\\s+BY|LIMIT)\\s*$");
+    private static final Pattern IN_LIST_START = Pattern.compile("(?i)\\b(NOT\\s+)?IN\\s*\\(\\s*$");
+    private static final Pattern GROUPING_CLAUSE = Pattern.compile("(?i)\\b(?:HAVING|GROUP\\s+BY)\\b");
+    private static final Pattern ORDER_END = Pattern.compile("(?i)^\\s*(?:$|LIMIT\\b|FOR\\b|LOCK\\b|\\)|;)");
+
+    private final PreparedTemplate preparedTemplate;
+    private final CompiledTemplate template;
+    private final Object[] values;
+    private List<SQLFragment> epilogueList;
+    private InListBucketing inListBucketing;
+    private Integer fetchSize;
+    private Integer maxRows;
+    private int resultSetType;
+    private int resultSetConcurrency;
+    private int resultSetHoldability;
+    private boolean readOnly;
+    private FoundRowsStrategy foundRowsStrategy;
+    private String[] resultCacheTables;
 
+    private final SQLSession session;
     private DataSource dataSource;
 
     public SQLTemplate(String template, DataSource dataSource) {
-        this.template = template;
-        this.dataSource = dataSource;
+        this(CompiledTemplate.compile(template), dataSource);
+    }
+
+    public SQLTemplate(CompiledTemplate template, DataSource dataSource) {
+        this(new PreparedTemplate(template, dataSource));
+    }
+
+    public SQLTemplate(PreparedTemplate preparedTemplate) {
+        this(preparedTemplate, null);
+    }
+
+    SQLTemplate(PreparedTemplate preparedTemplate, @Nullable SQLSession session) {
+        this.preparedTemplate = preparedTemplate;
+        this.session = session;
+        this.template = preparedTemplate.getCompiledTemplate();
+        this.dataSource = preparedTemplate.getDataSource();
+        this.values = new Object[preparedTemplate.getSlotCount()];
+        this.inListBucketing = preparedTemplate.getFactory().getInListBucketing();
+        Arrays.fill(values, UNSET);
     }
 
     public int executeQuery() throws SQLException {
-        try ( Connection connection = dataSource.getConnection();
-              PreparedStatement ps = prepareStatement(connection, false) ) {
+        SQLFragment expandedQuery = expand();
+        try ( ConnectionLease connectionLease = openConnection();
+              StatementCache.Lease lease = prepareStatement(connectionLease.getConnection(), expandedQuery, false) ) {
+            Connection connection = connectionLease.getConnection();
+            PreparedStatement ps = lease.getStatement();
             try {
-                return ps.executeUpdate();
+                int count = ps.executeUpdate();
+                invalidateResultCache(expandedQuery.getFragment());
+                return count;
             }
             catch (SQLException ex) {
                 if (!LOG.isLoggable(Level.FINEST)) {
@@ -47,6 +102,113 @@ public class SQLTemplate {
         }
     }
 
+    public int[] executeBatch(@Nonnull Iterable<? extends Map<String, ?>> rows) throws SQLException {
+        return executeBatch(rows, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Выполняет шаблон для каждой строки {@code rows} через JDBC batch на одном соединении. Значения строки
+     * связываются поверх уже заданных через {@link #parameter(String, Object)}; пока раскрытый текст запроса
+     * не меняется, используется один и тот же {@link PreparedStatement}, который сбрасывается каждые
+     * {@code batchSize} строк.
+     *
+     * @return количество обновленных записей для каждой строки, в порядке {@code rows}
+     * @throws IllegalArgumentException если в строке есть имя, не используемое в шаблоне
+     * @throws BatchUpdateException с количествами для всех строк, выполненных до ошибки, включая предыдущие batch'и
+     */
+    public int[] executeBatch(@Nonnull Iterable<? extends Map<String, ?>> rows, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be equals or greater than 1, got " + batchSize);
+        }
+        Object[] boundValues = values.clone();
+        int[] updateCounts = new int[0];
+        try (ConnectionLease connectionLease = openConnection()) {
+            Connection connection = connectionLease.getConnection();
+            StatementCache.Lease lease = null;
+            String currentQuery = null;
+            int pending = 0;
+            try {
+                for (Map<String, ?> row : rows) {
+                    System.arraycopy(boundValues, 0, values, 0, values.length);
+                    for (Map.Entry<String, ?> entry : row.entrySet()) {
+                        int slot = preparedTemplate.slotOf(entry.getKey());
+                        if (slot < 0) {
+                            throw new IllegalArgumentException("Placeholder with name '" + entry.getKey()
+                                                               + "' is not used in template");
+                        }
+                        values[slot] = entry.getValue();
+                    }
+                    SQLFragment expandedQuery = expand();
+                    if (lease != null && (pending == batchSize || !currentQuery.equals(expandedQuery.getFragment()))) {
+                        updateCounts = appendUpdateCounts(updateCounts, executeBatch(lease, updateCounts));
+                        invalidateResultCache(currentQuery);
+                        pending = 0;
+                        if (!currentQuery.equals(expandedQuery.getFragment())) {
+                            lease.close();
+                            lease = null;
+                        }
+                    }
+                    if (lease == null) {
+                        currentQuery = expandedQuery.getFragment();
+                        lease = prepareStatement(connection, expandedQuery, false);
+                    }
+                    else {
+                        bindParameters(lease.getStatement(), expandedQuery);
+                    }
+                    lease.getStatement().addBatch();
+                    pending++;
+                }
+                if (lease != null && pending > 0) {
+                    updateCounts = appendUpdateCounts(updateCounts, executeBatch(lease, updateCounts));
+                    invalidateResultCache(currentQuery);
+                    pending = 0;
+                }
+            }
+            catch (SQLException ex) {
+                if (LOG.isLoggable(Level.FINEST)) {
+                    LOG.finest(String.format("%08X: batch of %s", unwrap(connection).hashCode(), currentQuery));
+                }
+                throw ex;
+            }
+            finally {
+                if (lease != null) {
+                    try {
+                        if (pending > 0) {
+                            lease.getStatement().clearBatch();
+                        }
+                    }
+                    finally {
+                        lease.close();
+                    }
+                }
+            }
+        }
+        finally {
+            System.arraycopy(boundValues, 0, values, 0, values.length);
+        }
+        return updateCounts;
+    }
+
+    /**
+     * Выполняет накопленный batch; {@link BatchUpdateException} дополняется количествами предыдущих batch'ей
+     */
+    private static int[] executeBatch(StatementCache.Lease lease, int[] previousUpdateCounts) throws SQLException {
+        try {
+            return lease.getStatement().executeBatch();
+        }
+        catch (BatchUpdateException ex) {
+            int[] batchUpdateCounts = ex.getUpdateCounts() == null ? new int[0] : ex.getUpdateCounts();
+            throw new BatchUpdateException(ex.getMessage(), ex.getSQLState(), ex.getErrorCode(),
+                                           appendUpdateCounts(previousUpdateCounts, batchUpdateCounts), ex);
+        }
+    }
+
+    private static int[] appendUpdateCounts(int[] updateCounts, int[] batchUpdateCounts) {
+        int[] result = Arrays.copyOf(updateCounts, updateCounts.length + batchUpdateCounts.length);
+        System.arraycopy(batchUpdateCounts, 0, result, updateCounts.length, batchUpdateCounts.length);
+        return result;
+    }
+
     public <T extends Throwable> void executeQueryAndThrowIfNoUpdate(Class<T> throwable) throws T, SQLException {
         if (executeQuery() == 0) {
             try {
@@ -59,9 +221,13 @@ public class SQLTemplate {
     }
 
     public <T> ResultList<T> executeQuery(GeneratedKeyMapper<T> generatedKeyMapper) throws SQLException {
-        try ( Connection connection = dataSource.getConnection();
-              PreparedStatement ps = prepareStatement(connection, false) ) {
+        SQLFragment expandedQuery = expand();
+        try ( ConnectionLease connectionLease = openConnection();
+              StatementCache.Lease lease = prepareStatement(connectionLease.getConnection(), expandedQuery, false) ) {
+            Connection connection = connectionLease.getConnection();
+            PreparedStatement ps = lease.getStatement();
             int count = ps.executeUpdate();
+            invalidateResultCache(expandedQuery.getFragment());
             ResultList<T> resultList = new ResultArrayList<>(count);
             if (count > 0) {
                 try (ExtendedResultSet rs = new ExtendedResultSet(ps.getGeneratedKeys())) {
@@ -82,17 +248,25 @@ public class SQLTemplate {
     }
 
     public <T> ResultListOfOptionals<T> executeQuery(OptionalMapper<T> optionalMapper) throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            SQLLimit sqlLimit = getParameterOf(SQLLimit.class);
-            SQLSelect sqlSelect = getParameterOf(SQLSelect.class);
-            boolean checkFoundRows = sqlSelect != null && sqlSelect.contains(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS);
-            try (PreparedStatement ps = prepareStatement(connection, false)) {
+        SQLLimit sqlLimit = getParameterOf(SQLLimit.class);
+        FoundRowsQuery foundRowsQuery = foundRowsQuery();
+        try (ConnectionLease connectionLease = openConnection()) {
+            Connection connection = connectionLease.getConnection();
+            if (foundRowsQuery != null) {
+                foundRowsQuery.startCount();
+            }
+            SQLFragment expandedQuery = foundRowsQuery == null ? expand() : foundRowsQuery.getQuery();
+            try (StatementCache.Lease lease = prepareStatement(connection, expandedQuery, false)) {
+                PreparedStatement ps = lease.getStatement();
                 try (ExtendedResultSet rs = new ExtendedResultSet(ps.executeQuery())) {
-                    Integer foundRows = checkFoundRows ? selectFoundRows(connection) : null;
+                    Integer foundRows = foundRowsQuery == null ? null : foundRowsQuery.getFoundRows(connection);
+                    FoundRowsAccuracy foundRowsAccuracy = foundRowsQuery == null ? null : foundRowsQuery.getAccuracy();
                     rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY, foundRows);
-                    ResultListOfOptionals<T> resultList = new ResultArrayListOfOptionals<>(foundRows,
+                    rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ACCURACY_ATTACHMENT_KEY, foundRowsAccuracy);
+                    ResultListOfOptionals<T> resultList = new ResultArrayListOfOptionals<>(foundRows, foundRowsAccuracy,
                                                                      sqlLimit == null ? null : sqlLimit.getOffset(),
-                                                                     sqlLimit == null ? null : sqlLimit.getLimit());
+                                                                     sqlLimit == null ? null : sqlLimit.getLimit(),
+                                                                     null);
                     while (rs.next()) {
                         @SuppressWarnings("unchecked")
                         Optional<T> object = optionalMapper.map(rs);
@@ -111,17 +285,63 @@ public class SQLTemplate {
     }
 
     public <T> ResultList<T> executeQuery(Mapper<T> mapper) throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            SQLLimit sqlLimit = getParameterOf(SQLLimit.class);
-            SQLSelect sqlSelect = getParameterOf(SQLSelect.class);
-            boolean checkFoundRows = sqlSelect != null && sqlSelect.contains(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS);
-            try (PreparedStatement ps = prepareStatement(connection, false)) {
+        QueryResultCache resultCache = resultCache();
+        SQLTemplateFactory factory = preparedTemplate.getFactory();
+        boolean coalesce = session == null && factory.isCoalesceReads();
+        if (resultCache == null && !coalesce) {
+            return selectList(mapper);
+        }
+        SQLFragment expandedQuery = expand();
+        QueryKey queryKey = resultKey(expandedQuery, mapper);
+        if (resultCache != null) {
+            @SuppressWarnings("unchecked")
+            ResultList<T> cached = (ResultList<T>) resultCache.get(queryKey);
+            if (cached != null) {
+                return copyOf(cached);
+            }
+        }
+        QueryResultCache.Stamp stamp = resultCache == null ? null
+                                                           : resultCache.stamp(resultCacheTables(expandedQuery));
+        if (!coalesce) {
+            ResultList<T> resultList = selectList(mapper);
+            resultCache.put(queryKey, copyOf(resultList), stamp);
+            return resultList;
+        }
+        ResultList<T> sharedList = factory.coalesce(queryKey, () -> {
+            ResultList<T> resultList = selectList(mapper);
+            if (resultCache != null) {
+                resultCache.put(queryKey, resultList, stamp);
+            }
+            return resultList;
+        });
+        return copyOf(sharedList);
+    }
+
+    private static <T> ResultList<T> copyOf(ResultList<T> resultList) {
+        return new ResultArrayList<>(resultList.getFoundRows(), resultList.getFoundRowsAccuracy(),
+                                     resultList.getOffset(), resultList.getLimit(), resultList);
+    }
+
+    private <T> ResultList<T> selectList(Mapper<T> mapper) throws SQLException {
+        SQLLimit sqlLimit = getParameterOf(SQLLimit.class);
+        FoundRowsQuery foundRowsQuery = foundRowsQuery();
+        try (ConnectionLease connectionLease = openConnection()) {
+            Connection connection = connectionLease.getConnection();
+            if (foundRowsQuery != null) {
+                foundRowsQuery.startCount();
+            }
+            SQLFragment expandedQuery = foundRowsQuery == null ? expand() : foundRowsQuery.getQuery();
+            try (StatementCache.Lease lease = prepareStatement(connection, expandedQuery, false)) {
+                PreparedStatement ps = lease.getStatement();
                 try (ExtendedResultSet rs = new ExtendedResultSet(ps.executeQuery())) {
-                    Integer foundRows = checkFoundRows ? selectFoundRows(connection) : null;
+                    Integer foundRows = foundRowsQuery == null ? null : foundRowsQuery.getFoundRows(connection);
+                    FoundRowsAccuracy foundRowsAccuracy = foundRowsQuery == null ? null : foundRowsQuery.getAccuracy();
                     rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY, foundRows);
-                    ResultList<T> resultList = new ResultArrayList<>(foundRows,
+                    rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ACCURACY_ATTACHMENT_KEY, foundRowsAccuracy);
+                    ResultList<T> resultList = new ResultArrayList<>(foundRows, foundRowsAccuracy,
                                                                      sqlLimit == null ? null : sqlLimit.getOffset(),
-                                                                     sqlLimit == null ? null : sqlLimit.getLimit());
+                                                                     sqlLimit == null ? null : sqlLimit.getLimit(),
+                                                                     null);
                     while (rs.next()) {
                         T object = mapper.map(rs);
                         resultList.add(object);
@@ -138,15 +358,252 @@ public class SQLTemplate {
         }
     }
 
+    /**
+     * Выполняет запрос и читает первую колонку через {@link ResultSet#getInt(int)} в {@link IntResultList}
+     * без упаковки значений
+     */
+    public IntResultList executeQueryForInts() throws SQLException {
+        return executeQuery(new PrimitiveListAggregator<>(getParameterOf(SQLLimit.class), IntResultList.class,
+                                                          IntResultList::new));
+    }
+
+    /**
+     * Выполняет запрос и читает первую колонку через {@link ResultSet#getLong(int)} в {@link LongResultList}
+     * без упаковки значений
+     */
+    public LongResultList executeQueryForLongs() throws SQLException {
+        return executeQuery(new PrimitiveListAggregator<>(getParameterOf(SQLLimit.class), LongResultList.class,
+                                                          LongResultList::new));
+    }
+
+    /**
+     * Выполняет запрос и читает первую колонку через {@link ResultSet#getDouble(int)} в {@link DoubleResultList}
+     * без упаковки значений
+     */
+    public DoubleResultList executeQueryForDoubles() throws SQLException {
+        return executeQuery(new PrimitiveListAggregator<>(getParameterOf(SQLLimit.class), DoubleResultList.class,
+                                                          DoubleResultList::new));
+    }
+
+    /**
+     * Выполняет запрос и читает все колонки в {@link ColumnarResult}
+     */
+    public ColumnarResult executeQueryColumnar() throws SQLException {
+        return executeQuery(new ColumnarAggregator(getParameterOf(SQLLimit.class)));
+    }
+
+    /**
+     * Выполняет запрос в {@link SpillingResultList}: после {@code maxHeapRows} строк или {@code maxHeapBytes}
+     * байт по оценке {@code codec} строки выносятся во временный файл. Список нужно закрыть после использования;
+     * при ошибке выполнения он закрывается автоматически.
+     */
+    public <T> SpillingResultList<T> executeQuerySpilling(@Nonnull Mapper<T> mapper,
+                                                          @Nonnull SpillingResultList.RowCodec<T> codec,
+                                                          int maxHeapRows, long maxHeapBytes) throws SQLException {
+        SQLLimit sqlLimit = getParameterOf(SQLLimit.class);
+        SpillAggregator<T> aggregator = new SpillAggregator<>(mapper, resultSet -> new SpillingResultList<>(
+                codec, maxHeapRows, maxHeapBytes,
+                resultSet.getAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY),
+                resultSet.getAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ACCURACY_ATTACHMENT_KEY),
+                sqlLimit == null ? null : sqlLimit.getOffset(),
+                sqlLimit == null ? null : sqlLimit.getLimit()));
+        try {
+            return aggregate(aggregator);
+        }
+        catch (SQLException | RuntimeException | Error ex) {
+            if (aggregator.resultList != null) {
+                aggregator.resultList.close();
+            }
+            throw ex;
+        }
+    }
+
+    public <T> Stream<T> stream(Mapper<T> mapper) throws SQLException {
+        return stream(mapper, fetchSize != null ? fetchSize : DEFAULT_STREAM_FETCH_SIZE);
+    }
+
+    /**
+     * Выполняет запрос и возвращает ленивый поток строк. Соединение, statement и {@link ExtendedResultSet}
+     * остаются открытыми до закрытия потока, поэтому поток необходимо закрывать (try-with-resources).
+     * Исключения {@link SQLException} при чтении строк пробрасываются обернутыми в {@link RuntimeException}.
+     *
+     * @param fetchSize подсказка драйверу о количестве строк, получаемых за одно обращение к серверу
+     *                  (для потокового чтения в MySQL используется {@link Integer#MIN_VALUE})
+     */
+    public <T> Stream<T> stream(Mapper<T> mapper, int fetchSize) throws SQLException {
+        ConnectionLease connectionLease = openConnection();
+        Connection connection = connectionLease.getConnection();
+        StatementCache.Lease lease = null;
+        ExtendedResultSet rs;
+        try {
+            lease = prepareStatement(connection, expand(), false);
+            if (fetchSize != 0) {
+                lease.getStatement().setFetchSize(fetchSize);
+            }
+            rs = new ExtendedResultSet(lease.getStatement().executeQuery());
+        }
+        catch (SQLException | RuntimeException | Error ex) {
+            if (LOG.isLoggable(Level.FINEST) && lease != null) {
+                LOG.finest(String.format("%08X: %s", unwrap(connection).hashCode(), lease.getStatement()));
+            }
+            closeAll(ex, lease, connectionLease);
+            throw ex;
+        }
+        StatementCache.Lease statementLease = lease;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                                                                             Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rs));
+                    return true;
+                }
+                catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                closeAll(null, rs, statementLease, connectionLease);
+            }
+            catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+    }
+
+    private static void closeAll(@Nullable Throwable primary, @Nonnull AutoCloseable ... closeables) throws SQLException {
+        SQLException failure = null;
+        for (AutoCloseable closeable : closeables) {
+            if (closeable == null) {
+                continue;
+            }
+            try {
+                closeable.close();
+            }
+            catch (Exception ex) {
+                if (primary != null) {
+                    primary.addSuppressed(ex);
+                }
+                else if (failure == null) {
+                    failure = ex instanceof SQLException ? (SQLException) ex : new SQLException(ex);
+                }
+                else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Асинхронный вариант {@link #executeQuery(Mapper)}, выполняемый на executor'е фабрики
+     * (см. {@link SQLTemplateFactory#executor(Executor)}). Шаблон не должен изменяться после вызова.
+     */
+    public <T> CompletableFuture<ResultList<T>> executeQueryAsync(Mapper<T> mapper) {
+        return executeAsync(() -> executeQuery(mapper));
+    }
+
+    /**
+     * Асинхронный вариант {@link #executeQuery(RowAggregator)}, выполняемый на executor'е фабрики
+     * (см. {@link SQLTemplateFactory#executor(Executor)}). Шаблон не должен изменяться после вызова.
+     */
+    public <T> CompletableFuture<T> executeQueryAsync(RowAggregator<? extends T, ? super ExtendedResultSet> aggregator) {
+        return executeAsync(() -> executeQuery(aggregator));
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Callable<T> callable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            preparedTemplate.getFactory().getExecutor().execute(() -> {
+                try {
+                    future.complete(callable.call());
+                }
+                catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        }
+        catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
     public <T, R> T executeQuery(Mapper<R> mapper, RowAggregator<? extends T, ? super R> aggregator) throws SQLException {
         return executeQuery(new MappableRowAggregator<>(mapper, aggregator));
     }
 
+    /**
+     * Для шаблонов, помеченных {@link #cacheResult(String...)}, кэшируются только результаты агрегаторов
+     * {@link #executeQueryForInts()}, {@link #executeQueryForLongs()}, {@link #executeQueryForDoubles()}
+     * и {@link #executeQueryColumnar()}: произвольный агрегатор не позволяет определить, взаимозаменяемы ли
+     * два его экземпляра. Вызывающий получает собственную копию списка, {@link ColumnarResult} неизменяем.
+     */
     public <T> T executeQuery(RowAggregator<? extends T, ? super ExtendedResultSet> aggregator) throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            SQLSelect sqlSelect = getParameterOf(SQLSelect.class);
-            boolean checkFoundRows = sqlSelect != null && sqlSelect.contains(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS);
-            try (PreparedStatement ps = prepareStatement(connection, false)) {
+        QueryResultCache resultCache = resultCache();
+        Object discriminator = resultCache == null ? null : resultDiscriminator(aggregator);
+        if (discriminator == null) {
+            return aggregate(aggregator);
+        }
+        SQLFragment expandedQuery = expand();
+        QueryKey cacheKey = resultKey(expandedQuery, discriminator);
+        @SuppressWarnings("unchecked")
+        T cached = (T) resultCache.get(cacheKey);
+        if (cached != null) {
+            return copyOfResult(cached);
+        }
+        QueryResultCache.Stamp stamp = resultCache.stamp(resultCacheTables(expandedQuery));
+        T result = aggregate(aggregator);
+        resultCache.put(cacheKey, copyOfResult(result), stamp);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T copyOfResult(T result) {
+        return result instanceof PrimitiveResultList ? (T) ((PrimitiveResultList<?>) result).copy() : result;
+    }
+
+    /**
+     * Ключ кэша результата и объединения чтений: кроме запроса и способа чтения строк учитывает настройки
+     * выполнения, от которых зависят состав результата и общее количество строк
+     */
+    private QueryKey resultKey(SQLFragment expandedQuery, Object discriminator) {
+        FoundRowsStrategy strategy = foundRowsStrategy != null ? foundRowsStrategy
+                                                               : preparedTemplate.getFactory().getFoundRowsStrategy();
+        Integer rowsLimit = maxRows == null || maxRows == 0 ? null : maxRows;
+        return new QueryKey(expandedQuery, Arrays.asList(discriminator, rowsLimit, strategy));
+    }
+
+    /**
+     * Признак агрегатора для ключа кэша; {@code null}, если результат агрегатора не кэшируется
+     */
+    private static @Nullable Object resultDiscriminator(RowAggregator<?, ?> aggregator) {
+        if (aggregator instanceof PrimitiveListAggregator) {
+            return ((PrimitiveListAggregator<?>) aggregator).listType;
+        }
+        if (aggregator instanceof ColumnarAggregator) {
+            return ColumnarAggregator.class;
+        }
+        return null;
+    }
+
+    private <T> T aggregate(RowAggregator<? extends T, ? super ExtendedResultSet> aggregator) throws SQLException {
+        FoundRowsQuery foundRowsQuery = foundRowsQuery();
+        try (ConnectionLease connectionLease = openConnection()) {
+            Connection connection = connectionLease.getConnection();
+            if (foundRowsQuery != null) {
+                foundRowsQuery.startCount();
+            }
+            SQLFragment expandedQuery = foundRowsQuery == null ? expand() : foundRowsQuery.getQuery();
+            try (StatementCache.Lease lease = prepareStatement(connection, expandedQuery, false)) {
+                PreparedStatement ps = lease.getStatement();
                 @SuppressWarnings({ "unchecked", "rawtypes" })
                 SQLRowAggregator<T> sqlRowAggregator =
                         aggregator instanceof SQLRowAggregator ? (SQLRowAggregator) aggregator
@@ -156,8 +613,11 @@ public class SQLTemplate {
                     return result;
                 }
                 try (ExtendedResultSet rs = new ExtendedResultSet(ps.executeQuery())) {
-                    if (checkFoundRows) {
-                        rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY, selectFoundRows(connection));
+                    if (foundRowsQuery != null) {
+                        rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY,
+                                         foundRowsQuery.getFoundRows(connection));
+                        rs.putAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ACCURACY_ATTACHMENT_KEY,
+                                         foundRowsQuery.getAccuracy());
                     }
                     result = sqlRowAggregator != null ? sqlRowAggregator.postQuery(rs) : null;
                     if (result != null) {
@@ -189,14 +649,106 @@ public class SQLTemplate {
 
     @SuppressWarnings("unused")
     public SQLTemplate parameter(@Nonnull String parameterName, Object value) {
-        parameterMap.put(parameterName, value);
+        int slot = preparedTemplate.slotOf(parameterName);
+        if (slot >= 0) {
+            values[slot] = value;
+        }
+        return this;
+    }
+
+    @SuppressWarnings("unused")
+    public SQLTemplate parameter(int slot, Object value) {
+        values[slot] = value;
+        return this;
+    }
+
+    /**
+     * Подсказка драйверу о количестве строк, получаемых за одно обращение к серверу
+     */
+    @SuppressWarnings("unused")
+    public SQLTemplate fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Ограничение количества строк результата на уровне {@link Statement#setMaxRows(int)}
+     */
+    @SuppressWarnings("unused")
+    public SQLTemplate maxRows(int maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("Max rows must be equals or greater than 0, got " + maxRows);
+        }
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    /**
+     * {@link ResultSet#TYPE_FORWARD_ONLY} и {@link ResultSet#CONCUR_READ_ONLY} курсор
+     */
+    @SuppressWarnings("unused")
+    public SQLTemplate forwardOnly() {
+        return cursor(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    @SuppressWarnings("unused")
+    public SQLTemplate cursor(int resultSetType, int resultSetConcurrency) {
+        this.resultSetType = resultSetType;
+        this.resultSetConcurrency = resultSetConcurrency;
+        return this;
+    }
+
+    @SuppressWarnings("unused")
+    public SQLTemplate holdability(int resultSetHoldability) {
+        this.resultSetHoldability = resultSetHoldability;
+        return this;
+    }
+
+    /**
+     * Выполняет запрос на соединении в режиме {@link Connection#setReadOnly(boolean) read-only};
+     * исходный режим соединения восстанавливается после выполнения
+     */
+    @SuppressWarnings("unused")
+    public SQLTemplate readOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
+    /**
+     * Способ получения общего количества строк, см. {@link FoundRowsStrategy}; {@code null} означает
+     * значение по умолчанию фабрики
+     */
+    @SuppressWarnings("unused")
+    public SQLTemplate foundRowsStrategy(@Nullable FoundRowsStrategy foundRowsStrategy) {
+        this.foundRowsStrategy = foundRowsStrategy;
+        return this;
+    }
+
+    /**
+     * Разрешает кэширование результата {@link #executeQuery(Mapper)} и {@link #executeQuery(RowAggregator)}
+     * в {@link QueryResultCache} фабрики. Записи помечаются указанными таблицами, а если они не указаны —
+     * таблицами из {@code FROM} и {@code JOIN} запроса. Без кэша у фабрики и внутри транзакционной
+     * {@link SQLSession} не действует.
+     */
+    public SQLTemplate cacheResult(@Nonnull String ... tables) {
+        this.resultCacheTables = tables.clone();
+        return this;
+    }
+
+    /**
+     * Включает дополнение связанных с плейсхолдерами {@link Iterable} до фиксированных размеров,
+     * см. {@link InListBucketing}; {@code null} отключает дополнение
+     */
+    @SuppressWarnings("unused")
+    public SQLTemplate inListBucketing(@Nullable InListBucketing inListBucketing) {
+        this.inListBucketing = inListBucketing;
         return this;
     }
 
     @SuppressWarnings("unused")
     public SQLTemplate epilogue(@Nullable SQLFragment sqlFragment) {
         if (sqlFragment != null) {
-            epilogueList.add(sqlFragment);
+            epilogueList().add(sqlFragment);
         }
         return this;
     }
@@ -206,7 +758,7 @@ public class SQLTemplate {
         if (list != null) {
             list.stream().filter(fragmentType::isInstance)
                          .map(fragmentType::cast)
-                         .collect(Collectors.toCollection(() -> epilogueList));
+                         .collect(Collectors.toCollection(this::epilogueList));
         }
         return this;
     }
@@ -216,76 +768,163 @@ public class SQLTemplate {
         if (list != null) {
             for (Object o : list) {
                 if (fragmentType.isInstance(o)) {
-                    epilogueList.add((SQLFragment) o);
+                    epilogueList().add((SQLFragment) o);
                 }
             }
         }
         return this;
     }
 
-    private PreparedStatement prepareStatement(Connection connection, boolean fetchGeneratedKey) throws SQLException {
+    private ConnectionLease openConnection() throws SQLException {
+        if (session != null) {
+            return session.leaseConnection(readOnly);
+        }
+        return ConnectionLease.open(dataSource, readOnly, preparedTemplate.getFactory().getConnectionPermits());
+    }
+
+    private List<SQLFragment> epilogueList() {
+        if (epilogueList == null) {
+            epilogueList = new ArrayList<>();
+        }
+        return epilogueList;
+    }
+
+    /**
+     * Раскрывает шаблон со связанными значениями в текст запроса и список параметров
+     */
+    private SQLFragment expand() {
+        return expand(values);
+    }
+
+    private SQLFragment expand(Object[] values) {
+        return expand(values, false);
+    }
+
+    /**
+     * @param forCount опускать {@link SQLOrder} и {@link SQLLimit} вместе с предшествующими им
+     *                 {@code ORDER BY} и {@code LIMIT} — они не влияют на количество строк; {@code ORDER BY},
+     *                 в котором за плейсхолдером следуют другие колонки, остается как есть
+     */
+    private SQLFragment expand(Object[] values, boolean forCount) {
         List<Object> parameters = new ArrayList<>();
-        Matcher matcher = PLACEHOLDER_PATTERN.matcher(template);
-        StringBuilder sb = new StringBuilder();
-        int position = 0;
-        while(matcher.find()) {
-            sb.append(template, position, matcher.start());
-            position = matcher.end();
-            if (matcher.group().startsWith("\\")) {
-                sb.append(":").append(matcher.group(1));
+        StringBuilder sb = new StringBuilder(template.getLiteralsLength() + template.getPlaceholderCount() * 2);
+        for (int p = 0, placeholderCount = template.getPlaceholderCount(); p < placeholderCount; p++) {
+            String literal = template.getLiteral(p);
+            Object rawValue = values[preparedTemplate.getPlaceholderSlot(p)];
+            if (rawValue == UNSET) {
+                throw new IllegalArgumentException("Parameter with name '" + template.getPlaceholder(p) + "' is not set");
             }
-            else {
-                String placeholderName = matcher.group(1);
-                if (!parameterMap.containsKey(placeholderName)) {
-                    throw new IllegalArgumentException("Parameter with name '" + placeholderName + "' is not set");
-                }
-                Object rawValue = parameterMap.get(placeholderName);
-                @SuppressWarnings("unchecked")
-                Iterable<Object> rawValueIterable = rawValue instanceof Iterable
-                                                            ? (Iterable<Object>) rawValue
-                                                            : Collections.singleton(rawValue);
-                boolean nextIteration = false;
-                for (Object value : rawValueIterable) {
-                    if (nextIteration) {
-                        sb.append(", ");
-                    }
-                    else {
-                        nextIteration = true;
-                    }
-                    if (value instanceof SQLFragment) {
-                        if (value instanceof KnownMeaningOfLife) {
-                            ((KnownMeaningOfLife) value).withMeaningOfLife();
-                        }
-                        SQLFragment sqlFragment = (SQLFragment) value;
-                        parameters.addAll(sqlFragment.getParameters());
-                        sb.append(sqlFragment.getFragment());
-                    }
-                    else if (value instanceof SQLValue) {
-                        if (value instanceof KnownMeaningOfLife) {
-                            ((KnownMeaningOfLife) value).withMeaningOfLife();
-                        }
-                        parameters.add(((SQLValue) value).getSQLValueEntity());
-                        sb.append("?");
-                    }
-                    else if (value instanceof Enum) {
-                        parameters.add(((Enum) value).name());
-                        sb.append("?");
+            if (forCount && (rawValue instanceof SQLLimit
+                             || rawValue instanceof SQLOrder && ORDER_END.matcher(template.getLiteral(p + 1)).find())) {
+                Matcher matcher = ORDER_OR_LIMIT_CLAUSE.matcher(literal);
+                if (matcher.find()) {
+                    sb.append(literal, 0, matcher.start());
+                    continue;
+                }
+            }
+            sb.append(literal);
+            @SuppressWarnings("unchecked")
+            Iterable<Object> rawValueIterable = rawValue instanceof Iterable
+                                                        ? (Iterable<Object>) rawValue
+                                                        : Collections.singleton(rawValue);
+            int count = 0;
+            InListBucketing padding = inListBucketing != null && rawValue instanceof Iterable
+                                      ? inListPadding(literal) : null;
+            for (Object value : rawValueIterable) {
+                if (count++ > 0) {
+                    sb.append(", ");
+                }
+                if (value instanceof SQLFragment) {
+                    if (value instanceof KnownMeaningOfLife) {
+                        ((KnownMeaningOfLife) value).withMeaningOfLife();
                     }
-                    else {
-                        sb.append("?");
-                        parameters.add(value);
+                    SQLFragment sqlFragment = (SQLFragment) value;
+                    parameters.addAll(sqlFragment.getParameters());
+                    sb.append(sqlFragment.getFragment());
+                    padding = null;
+                }
+                else if (value instanceof SQLValue) {
+                    if (value instanceof KnownMeaningOfLife) {
+                        ((KnownMeaningOfLife) value).withMeaningOfLife();
                     }
+                    parameters.add(((SQLValue) value).getSQLValueEntity());
+                    sb.append("?");
+                }
+                else if (value instanceof Enum) {
+                    parameters.add(((Enum) value).name());
+                    sb.append("?");
+                }
+                else {
+                    sb.append("?");
+                    parameters.add(value);
+                }
+            }
+            if (padding != null && count > 0) {
+                Object padValue = padding.padValue(parameters.get(parameters.size() - 1));
+                for (int i = count, bucketSize = InListBucketing.bucketSize(count); i < bucketSize; i++) {
+                    sb.append(", ?");
+                    parameters.add(padValue);
                 }
             }
         }
-        sb.append(template, position, template.length());
-        for (SQLFragment sqlFragment : epilogueList) {
-            sb.append(" ").append(sqlFragment.getFragment());
-            parameters.addAll(sqlFragment.getParameters());
+        sb.append(template.getLiteral(template.getPlaceholderCount()));
+        if (epilogueList != null) {
+            for (SQLFragment sqlFragment : epilogueList) {
+                sb.append(" ").append(sqlFragment.getFragment());
+                parameters.addAll(sqlFragment.getParameters());
+            }
+        }
+        return new SQLFragment.Impl(sb.toString(), parameters);
+    }
+
+    /**
+     * Дополняются только списки, стоящие сразу после {@code IN (}; для {@code NOT IN} дополнение
+     * {@code NULL} сделало бы условие ложным, поэтому там всегда повторяется последнее значение
+     */
+    private @Nullable InListBucketing inListPadding(String precedingLiteral) {
+        Matcher matcher = IN_LIST_START.matcher(precedingLiteral);
+        if (!matcher.find()) {
+            return null;
+        }
+        return matcher.group(1) != null ? InListBucketing.REPEAT_LAST : inListBucketing;
+    }
+
+    private StatementCache.Lease prepareStatement(Connection connection, SQLFragment expandedQuery,
+                                                  boolean fetchGeneratedKey) throws SQLException {
+        String query = expandedQuery.getFragment();
+        StatementCache statementCache = session != null ? session.getStatementCache()
+                                                        : preparedTemplate.getFactory().getStatementCache();
+        StatementCache.Lease lease;
+        if (statementCache != null) {
+            lease = statementCache.prepare(connection, query, fetchGeneratedKey,
+                                           resultSetType, resultSetConcurrency, resultSetHoldability);
+        }
+        else {
+            lease = StatementCache.Lease.uncached(
+                    StatementCache.createStatement(connection, query, fetchGeneratedKey,
+                                                   resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+        try {
+            if (fetchSize != null) {
+                lease.getStatement().setFetchSize(fetchSize);
+            }
+            if (maxRows != null) {
+                lease.getStatement().setMaxRows(maxRows);
+            }
+            bindParameters(lease.getStatement(), expandedQuery);
+        }
+        catch (SQLException ex) {
+            lease.close();
+            throw ex;
         }
-        String query = sb.toString();
-        PreparedStatement ps = connection.prepareStatement(query, fetchGeneratedKey ? Statement.RETURN_GENERATED_KEYS
-                                                                                    : Statement.NO_GENERATED_KEYS);
+        if (LOG.isLoggable(Level.FINEST)) {
+            LOG.finest(String.format("%08X: %s", unwrap(connection).hashCode(), lease.getStatement()));
+        }
+        return lease;
+    }
+
+    private static void bindParameters(PreparedStatement ps, SQLFragment expandedQuery) throws SQLException {
+        List<Object> parameters = expandedQuery.getParameters();
         for (int i = 0; i < parameters.size(); i++) {
             try {
                 ps.setObject(i + 1, parameters.get(i));
@@ -294,19 +933,15 @@ public class SQLTemplate {
                 if (LOG.isLoggable(Level.FINEST)) {
                     LOG.log(Level.FINEST,
                             "Exception catched (and rethrowed) at ps.setObject(#{}, {}), query: {}",
-                            new Object[] { i + 1, parameters.get(i), query });
+                            new Object[] { i + 1, parameters.get(i), expandedQuery.getFragment() });
                 }
                 throw ex;
             }
         }
-        if (LOG.isLoggable(Level.FINEST)) {
-            LOG.finest(String.format("%08X: %s", unwrap(connection).hashCode(), ps));
-        }
-        return ps;
     }
 
     private @Nullable <T> T getParameterOf(Class<T> type) {
-        for (Object value : parameterMap.values()) {
+        for (Object value : values) {
             if (type.isInstance(value)) {
                 return type.cast(value);
             }
@@ -314,7 +949,7 @@ public class SQLTemplate {
         return null;
     }
 
-    private static @Nonnull Connection unwrap(@Nonnull Connection connection) {
+    static @Nonnull Connection unwrap(@Nonnull Connection connection) {
         Connection unwrapped = connection;
         try {
             for (int i = 0; i < 100; i++) {
@@ -330,9 +965,331 @@ public class SQLTemplate {
         return unwrapped;
     }
 
-    private static @Nullable Integer selectFoundRows(Connection connection) throws SQLException {
-        try (PreparedStatement cps = connection.prepareStatement("SELECT FOUND_ROWS()");
-             ResultSet crs = cps.executeQuery()) {
+    private @Nullable QueryResultCache resultCache() {
+        if (resultCacheTables == null || session != null && session.isTransactional()) {
+            return null;
+        }
+        return preparedTemplate.getFactory().getResultCache();
+    }
+
+    private Collection<String> resultCacheTables(SQLFragment expandedQuery) {
+        return resultCacheTables.length == 0 ? QueryResultCache.readTables(expandedQuery.getFragment())
+                                             : Arrays.asList(resultCacheTables);
+    }
+
+    private void invalidateResultCache(String query) {
+        QueryResultCache resultCache = preparedTemplate.getFactory().getResultCache();
+        if (resultCache != null) {
+            Set<String> tables = QueryResultCache.writtenTables(query);
+            if (session != null) {
+                session.invalidateResultCache(resultCache, tables);
+            }
+            else {
+                resultCache.invalidate(tables);
+            }
+        }
+    }
+
+    /**
+     * Возвращает запрос общего количества строк, если в параметрах есть {@link SQLSelect} с подсказкой
+     * {@link SQLSelect.MySQLHint#SQL_CALC_FOUND_ROWS}, иначе {@code null}. Если у фабрики включен
+     * {@link FoundRowsCache} и в нем есть значение для этой выборки, то подсказка убирается и подсчет не выполняется.
+     * Для {@link FoundRowsStrategy#COUNT_QUERY} при наличии executor'а у фабрики подсчет сразу запускается
+     * на отдельном соединении, см. {@link FoundRowsQuery#startCount()}. При
+     * {@link SQLTemplateFactory#connectionPermits(int)} для него без ожидания захватывается второе разрешение;
+     * если свободного нет, подсчет выполняется после выборки на ее соединении.
+     */
+    private @Nullable FoundRowsQuery foundRowsQuery() {
+        int selectSlot = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof SQLSelect) {
+                selectSlot = i;
+                break;
+            }
+        }
+        if (selectSlot < 0 || !((SQLSelect) values[selectSlot]).contains(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS)) {
+            return null;
+        }
+        SQLTemplateFactory factory = preparedTemplate.getFactory();
+        FoundRowsStrategy strategy = foundRowsStrategy != null ? foundRowsStrategy : factory.getFoundRowsStrategy();
+        FoundRowsCache cache = factory.getFoundRowsCache();
+        Long estimateThreshold = factory.getFoundRowsEstimateThreshold();
+        if (strategy == FoundRowsStrategy.CALC_FOUND_ROWS && cache == null && estimateThreshold == null) {
+            return new FoundRowsQuery(expand(), null);
+        }
+
+        Object[] queryValues = values.clone();
+        queryValues[selectSlot] = ((SQLSelect) values[selectSlot]).without(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS);
+        Object[] rowsValues = queryValues.clone();
+        for (int i = 0; i < rowsValues.length; i++) {
+            if (rowsValues[i] instanceof SQLLimit) {
+                rowsValues[i] = new SQLLimit((Long) null, null, ((SQLLimit) rowsValues[i]).isParameterized());
+            }
+        }
+        if (!hasGroupingClause()) {
+            rowsValues[selectSlot] = ((SQLSelect) values[selectSlot]).forCount();
+        }
+        SQLFragment rowsQuery = expand(rowsValues, true);
+        Integer cachedFoundRows = cache == null ? null : cache.get(rowsQuery);
+        if (cachedFoundRows != null) {
+            FoundRowsQuery foundRowsQuery = new FoundRowsQuery(expand(queryValues), rowsQuery);
+            foundRowsQuery.cachedFoundRows = cachedFoundRows;
+            return foundRowsQuery;
+        }
+        if (strategy == FoundRowsStrategy.CALC_FOUND_ROWS && estimateThreshold == null) {
+            FoundRowsQuery foundRowsQuery = new FoundRowsQuery(expand(), rowsQuery);
+            foundRowsQuery.calcFoundRows = true;
+            return foundRowsQuery;
+        }
+        FoundRowsQuery foundRowsQuery = new FoundRowsQuery(expand(queryValues), rowsQuery);
+        foundRowsQuery.estimateThreshold = estimateThreshold;
+        foundRowsQuery.parallelCount = session == null && estimateThreshold == null;
+        return foundRowsQuery;
+    }
+
+    /**
+     * {@code GROUP BY} и {@code HAVING} могут ссылаться на псевдонимы из списка колонок, а агрегаты в шаблоне
+     * меняют количество строк, поэтому такой список нельзя заменить константой
+     */
+    private boolean hasGroupingClause() {
+        for (int p = 0, placeholderCount = template.getPlaceholderCount(); p <= placeholderCount; p++) {
+            String literal = template.getLiteral(p);
+            if (GROUPING_CLAUSE.matcher(literal).find() || SQLSelect.AGGREGATE.matcher(literal).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SQLFragment countQuery(SQLFragment rowsQuery) {
+        return new SQLFragment.Impl("SELECT COUNT(*) FROM (" + rowsQuery.getFragment() + ") AS found_rows",
+                                    rowsQuery.getParameters());
+    }
+
+    private final class FoundRowsQuery {
+        private final SQLFragment query;
+        private final SQLFragment rowsQuery;
+        private AsyncCount asyncCount;
+        private boolean parallelCount;
+        private boolean calcFoundRows;
+        private Integer cachedFoundRows;
+        private Long estimateThreshold;
+        private FoundRowsAccuracy accuracy;
+
+        /**
+         * @param rowsQuery выборка без подсказки и без {@link SQLLimit}; {@code null} означает
+         *                  {@code SELECT FOUND_ROWS()} без кэширования
+         */
+        private FoundRowsQuery(@Nonnull SQLFragment query, @Nullable SQLFragment rowsQuery) {
+            this.query = query;
+            this.rowsQuery = rowsQuery;
+            this.calcFoundRows = rowsQuery == null;
+        }
+
+        /**
+         * Запускает подсчет на executor'е фабрики. Вызывается, когда соединение для выборки уже получено:
+         * разрешение для подсчета захватывается без ожидания и не может отнять разрешение у самой выборки
+         */
+        void startCount() {
+            SQLTemplateFactory factory = preparedTemplate.getFactory();
+            Executor executor = factory.getExecutorIfSet();
+            if (!parallelCount || asyncCount != null || executor == null) {
+                return;
+            }
+            Semaphore permits = factory.getConnectionPermits();
+            if (permits != null && !permits.tryAcquire()) {
+                return;
+            }
+            AsyncCount count = new AsyncCount(countQuery(rowsQuery), factory.getFoundRowsCountTimeoutNanos(), permits);
+            try {
+                executor.execute(count);
+                asyncCount = count;
+            }
+            catch (RuntimeException ex) {
+                count.releasePermit();
+            }
+        }
+
+        @Nonnull SQLFragment getQuery() {
+            return query;
+        }
+
+        /**
+         * Происхождение значения, возвращенного последним вызовом {@link #getFoundRows(Connection)}
+         */
+        @Nullable FoundRowsAccuracy getAccuracy() {
+            return accuracy;
+        }
+
+        @Nullable Integer getFoundRows(@Nonnull Connection connection) throws SQLException {
+            if (cachedFoundRows != null) {
+                accuracy = FoundRowsAccuracy.CACHED;
+                return cachedFoundRows;
+            }
+            if (estimateThreshold != null) {
+                Long estimate = selectEstimate(connection, rowsQuery);
+                if (estimate != null && estimate >= estimateThreshold) {
+                    accuracy = FoundRowsAccuracy.ESTIMATED;
+                    return (int) Math.min(estimate, Integer.MAX_VALUE);
+                }
+            }
+            Integer foundRows = calcFoundRows ? selectFoundRows(connection)
+                                              : asyncCount == null ? selectCount(connection, countQuery(rowsQuery))
+                                                                   : asyncCount.getCount(connection);
+            accuracy = foundRows == null ? null : FoundRowsAccuracy.EXACT;
+            FoundRowsCache cache = preparedTemplate.getFactory().getFoundRowsCache();
+            if (foundRows != null && cache != null && rowsQuery != null) {
+                cache.put(rowsQuery, foundRows);
+            }
+            return foundRows;
+        }
+    }
+
+    /**
+     * Подсчет строк на отдельном соединении. Выполнение захватывает тот, кто успеет первым: задача на executor'е —
+     * только после того, как получит соединение, или поток основного запроса — на своем соединении, если задача
+     * к этому моменту соединение еще не получила. Поэтому поток основного запроса ждет только уже выполняющийся
+     * подсчет и не может заблокироваться в ожидании соединения для него.
+     */
+    private final class AsyncCount implements Runnable {
+        private final SQLFragment countQuery;
+        private final long timeoutNanos;
+        private final Semaphore permits;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final AtomicBoolean permitReleased = new AtomicBoolean();
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        /**
+         * @param permits разрешения фабрики, одно из которых уже захвачено для этого подсчета; освобождается
+         *                после подсчета или когда подсчет забрал вызывающий
+         */
+        private AsyncCount(@Nonnull SQLFragment countQuery, long timeoutNanos, @Nullable Semaphore permits) {
+            this.countQuery = countQuery;
+            this.timeoutNanos = timeoutNanos;
+            this.permits = permits;
+        }
+
+        void releasePermit() {
+            if (permits != null && permitReleased.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!claimed.get()) {
+                    count();
+                }
+            }
+            finally {
+                releasePermit();
+            }
+        }
+
+        private void count() {
+            try (ConnectionLease connectionLease = ConnectionLease.open(dataSource, readOnly)) {
+                if (claimed.compareAndSet(false, true)) {
+                    try {
+                        result.complete(selectCount(connectionLease.getConnection(), countQuery));
+                    }
+                    catch (Throwable ex) {
+                        result.completeExceptionally(ex);
+                    }
+                }
+            }
+            catch (Throwable ex) {
+                if (!result.isDone()) {
+                    result.completeExceptionally(ex);
+                }
+            }
+        }
+
+        @Nullable Integer getCount(@Nonnull Connection connection) throws SQLException {
+            if (claimed.compareAndSet(false, true)) {
+                releasePermit();
+                return selectCount(connection, countQuery);
+            }
+            return await(result, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Дожидается {@code future}, пробрасывая {@link SQLException}, {@link RuntimeException} и {@link Error}
+     * как есть
+     */
+    static <T> T await(@Nonnull Future<T> future) throws SQLException {
+        return await(future, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    static <T> T await(@Nonnull Future<T> future, long timeout, @Nonnull TimeUnit unit) throws SQLException {
+        try {
+            return timeout == Long.MAX_VALUE ? future.get() : future.get(timeout, unit);
+        }
+        catch (TimeoutException ex) {
+            future.cancel(false);
+            throw new SQLTimeoutException("Timed out waiting for query result", ex);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for query result", ex);
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Оценка количества строк по плану запроса: колонка {@code rows} в выводе {@code EXPLAIN} MySQL
+     * или {@code rows=N} в первой строке плана PostgreSQL. {@code null}, если оценку получить не удалось.
+     */
+    private @Nullable Long selectEstimate(Connection connection, SQLFragment rowsQuery) throws SQLException {
+        SQLFragment explainQuery = new SQLFragment.Impl("EXPLAIN " + rowsQuery.getFragment(),
+                                                        rowsQuery.getParameters());
+        try (StatementCache.Lease lease = prepareStatement(connection, explainQuery, false);
+             ResultSet ers = lease.getStatement().executeQuery()) {
+            if (!ers.next()) {
+                return null;
+            }
+            ResultSetMetaData metaData = ers.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if ("rows".equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    long rows = ers.getLong(i);
+                    return ers.wasNull() ? null : rows;
+                }
+            }
+            String plan = ers.getString(1);
+            Matcher matcher = plan == null ? null : EXPLAIN_ROWS_PATTERN.matcher(plan);
+            return matcher != null && matcher.find() ? Long.parseLong(matcher.group(1)) : null;
+        }
+        catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private @Nullable Integer selectCount(Connection connection, SQLFragment countQuery) throws SQLException {
+        try (StatementCache.Lease lease = prepareStatement(connection, countQuery, false);
+             ResultSet crs = lease.getStatement().executeQuery()) {
+            if (crs.next()) {
+                return crs.getInt(1);
+            }
+            return null;
+        }
+    }
+
+    private @Nullable Integer selectFoundRows(Connection connection) throws SQLException {
+        try (StatementCache.Lease lease = prepareStatement(connection, FOUND_ROWS_QUERY, false);
+             ResultSet crs = lease.getStatement().executeQuery()) {
             if (crs.next()) {
                 return crs.getInt(1);
             }
@@ -387,6 +1344,10 @@ public class SQLTemplate {
             this.mapper = mapper;
         }
 
+        Mapper<R> getMapper() {
+            return mapper;
+        }
+
         @Override
         public final @Nullable T processRow(@Nonnull ExtendedResultSet resultSet) throws Exception {
             return processMappedRow(mapper.map(resultSet));
@@ -414,6 +1375,105 @@ public class SQLTemplate {
         }
     }
 
+    private static class PrimitiveListAggregator<L extends PrimitiveResultList<?>> extends AbstractSQLRowAggregator<L> {
+        private final SQLLimit sqlLimit;
+        private final Class<L> listType;
+        private final PrimitiveListFactory<L> listFactory;
+        private L resultList;
+
+        private PrimitiveListAggregator(@Nullable SQLLimit sqlLimit, @Nonnull Class<L> listType,
+                                        @Nonnull PrimitiveListFactory<L> listFactory) {
+            this.sqlLimit = sqlLimit;
+            this.listType = listType;
+            this.listFactory = listFactory;
+        }
+
+        @Override
+        public @Nullable L postQuery(@Nonnull ExtendedResultSet resultSet) throws Exception {
+            resultList = listFactory.create(resultSet.getAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY),
+                                            resultSet.getAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ACCURACY_ATTACHMENT_KEY),
+                                            sqlLimit == null ? null : sqlLimit.getOffset(),
+                                            sqlLimit == null ? null : sqlLimit.getLimit());
+            return null;
+        }
+
+        @Override
+        public @Nullable L processRow(@Nonnull ExtendedResultSet resultSet) throws Exception {
+            resultList.addFrom(resultSet, 1);
+            return null;
+        }
+
+        @Override
+        public @Nonnull L getResult() throws Exception {
+            return resultList;
+        }
+    }
+
+    private static class ColumnarAggregator extends AbstractSQLRowAggregator<ColumnarResult> {
+        private final SQLLimit sqlLimit;
+        private ColumnarResult result;
+
+        private ColumnarAggregator(@Nullable SQLLimit sqlLimit) {
+            this.sqlLimit = sqlLimit;
+        }
+
+        @Override
+        public @Nullable ColumnarResult postQuery(@Nonnull ExtendedResultSet resultSet) throws Exception {
+            result = new ColumnarResult(resultSet,
+                                        resultSet.getAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ATTACHMENT_KEY),
+                                        resultSet.getAttachment(SQLSelect.MySQLHint.FOUND_ROWS_ACCURACY_ATTACHMENT_KEY),
+                                        sqlLimit == null ? null : sqlLimit.getOffset(),
+                                        sqlLimit == null ? null : sqlLimit.getLimit());
+            return null;
+        }
+
+        @Override
+        public @Nullable ColumnarResult processRow(@Nonnull ExtendedResultSet resultSet) throws Exception {
+            result.addRow(resultSet);
+            return null;
+        }
+
+        @Override
+        public @Nonnull ColumnarResult getResult() throws Exception {
+            return result;
+        }
+    }
+
+    private static class SpillAggregator<T> extends AbstractMappableAggregator<SpillingResultList<T>, T> {
+        private final SpillListFactory<T> listFactory;
+        private SpillingResultList<T> resultList;
+
+        private SpillAggregator(@Nonnull Mapper<T> mapper, @Nonnull SpillListFactory<T> listFactory) {
+            super(mapper);
+            this.listFactory = listFactory;
+        }
+
+        @Override
+        public @Nullable SpillingResultList<T> postQuery(@Nonnull ExtendedResultSet resultSet) throws Exception {
+            resultList = listFactory.create(resultSet);
+            return null;
+        }
+
+        @Override
+        public @Nullable SpillingResultList<T> processMappedRow(T row) throws Exception {
+            resultList.add(row);
+            return null;
+        }
+
+        @Override
+        public @Nonnull SpillingResultList<T> getResult() throws Exception {
+            return resultList;
+        }
+    }
+
+    private interface SpillListFactory<T> {
+        SpillingResultList<T> create(ExtendedResultSet resultSet);
+    }
+
+    private interface PrimitiveListFactory<L> {
+        L create(Integer foundRows, FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit);
+    }
+
     public static abstract class ResultListKeyAggregator<T> extends AbstractSQLRowAggregator<ResultList<T>> {
         private final Object[] keyColumns;
         private final int[] keyIndexes;
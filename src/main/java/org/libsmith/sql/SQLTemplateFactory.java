@@ -1,25 +1,372 @@
 package org.libsmith.sql;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Dmitriy Balakin <dmitriy.balakin@0x0000.ru>
  * @created 09.03.2015 13:17
  */
 public class SQLTemplateFactory {
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 1024;
+    public static final long DEFAULT_FOUND_ROWS_COUNT_TIMEOUT_SECONDS = 30;
+
+    private static final Map<DataSource, WeakReference<SQLTemplateFactory>> DEFAULT_FACTORIES = new WeakHashMap<>();
+    private static final Lock DEFAULT_FACTORIES_LOCK = new ReentrantLock();
+
     private final DataSource dataSource;
+    private final Map<String, PreparedTemplate> templateCache;
+    private final Lock templateCacheLock = new ReentrantLock();
+    private volatile StatementCache statementCache;
+    private volatile InListBucketing inListBucketing;
+    private volatile Executor executor;
+    private volatile Semaphore connectionPermits;
+    private volatile FoundRowsStrategy foundRowsStrategy = FoundRowsStrategy.CALC_FOUND_ROWS;
+    private volatile FoundRowsCache foundRowsCache;
+    private volatile Long foundRowsEstimateThreshold;
+    private volatile long foundRowsCountTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_FOUND_ROWS_COUNT_TIMEOUT_SECONDS);
+    private volatile QueryResultCache resultCache;
+    private volatile boolean coalesceReads;
+    private final ConcurrentMap<QueryKey, CompletableFuture<Object>> inFlightReads = new ConcurrentHashMap<>();
 
     public SQLTemplateFactory(DataSource dataSource) {
+        this(dataSource, DEFAULT_TEMPLATE_CACHE_SIZE);
+    }
+
+    /**
+     * @param templateCacheSize максимальное количество разобранных шаблонов в кэше, 0 отключает кэширование
+     */
+    public SQLTemplateFactory(DataSource dataSource, int templateCacheSize) {
+        if (templateCacheSize < 0) {
+            throw new IllegalArgumentException("Template cache size must be equals or greater than 0, got "
+                                               + templateCacheSize);
+        }
         this.dataSource = dataSource;
+        this.templateCache = templateCacheSize == 0 ? null : new LRUCache<>(templateCacheSize);
+    }
+
+    /**
+     * Фабрика без кэша шаблонов и дополнительных настроек для шаблонов, созданных напрямую по {@link DataSource};
+     * одна на источник данных, пока на нее ссылается хотя бы один шаблон
+     */
+    static @Nonnull SQLTemplateFactory defaultFactory(@Nonnull DataSource dataSource) {
+        DEFAULT_FACTORIES_LOCK.lock();
+        try {
+            WeakReference<SQLTemplateFactory> reference = DEFAULT_FACTORIES.get(dataSource);
+            SQLTemplateFactory factory = reference == null ? null : reference.get();
+            if (factory == null) {
+                factory = new SQLTemplateFactory(dataSource, 0);
+                DEFAULT_FACTORIES.put(dataSource, new WeakReference<>(factory));
+            }
+            return factory;
+        }
+        finally {
+            DEFAULT_FACTORIES_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Включает кэширование {@link java.sql.PreparedStatement} на физических соединениях
+     *
+     * @param maxStatementsPerConnection максимальное количество statement'ов на одно соединение,
+     *                                   0 отключает кэширование
+     */
+    public SQLTemplateFactory statementCache(int maxStatementsPerConnection) {
+        this.statementCache = maxStatementsPerConnection == 0 ? null : new StatementCache(maxStatementsPerConnection);
+        return this;
+    }
+
+    /**
+     * Возвращает кэш statement'ов со счётчиками попаданий и промахов или {@code null}, если кэш отключен
+     */
+    public @Nullable StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Включает по умолчанию для всех шаблонов дополнение связанных с плейсхолдерами {@link Iterable}
+     * до фиксированных размеров, см. {@link InListBucketing}
+     */
+    public SQLTemplateFactory inListBucketing(@Nullable InListBucketing inListBucketing) {
+        this.inListBucketing = inListBucketing;
+        return this;
+    }
+
+    public @Nullable InListBucketing getInListBucketing() {
+        return inListBucketing;
+    }
+
+    /**
+     * Executor для {@link SQLTemplate#executeQueryAsync(SQLTemplate.Mapper)} и
+     * {@link SQLTemplate#executeQueryAsync(RowAggregator)}. Выполнение блокирует поток на время запроса,
+     * поэтому размер пула стоит согласовывать с размером пула соединений.
+     */
+    public SQLTemplateFactory executor(@Nullable Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public @Nonnull Executor getExecutor() {
+        Executor executor = this.executor;
+        if (executor == null) {
+            throw new IllegalStateException("Executor for asynchronous execution is not set");
+        }
+        return executor;
+    }
+
+    @Nullable Executor getExecutorIfSet() {
+        return executor;
+    }
+
+    /**
+     * Способ получения общего количества строк по умолчанию для всех шаблонов, см. {@link FoundRowsStrategy}
+     */
+    public SQLTemplateFactory foundRowsStrategy(@Nonnull FoundRowsStrategy foundRowsStrategy) {
+        this.foundRowsStrategy = foundRowsStrategy;
+        return this;
+    }
+
+    public @Nonnull FoundRowsStrategy getFoundRowsStrategy() {
+        return foundRowsStrategy;
+    }
+
+    /**
+     * Максимальное время ожидания параллельного подсчета строк для {@link FoundRowsStrategy#COUNT_QUERY}
+     * после завершения основного запроса; по истечении бросается {@link java.sql.SQLTimeoutException}
+     */
+    public SQLTemplateFactory foundRowsCountTimeout(long timeout, @Nonnull TimeUnit unit) {
+        if (timeout < 1) {
+            throw new IllegalArgumentException("Found rows count timeout must be equals or greater than 1, got "
+                                               + timeout);
+        }
+        this.foundRowsCountTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    long getFoundRowsCountTimeoutNanos() {
+        return foundRowsCountTimeoutNanos;
+    }
+
+    /**
+     * Включает кэширование общего количества строк, см. {@link FoundRowsCache}
+     */
+    public SQLTemplateFactory foundRowsCache(long ttl, @Nonnull TimeUnit unit, int maxSize) {
+        this.foundRowsCache = new FoundRowsCache(ttl, unit, maxSize);
+        return this;
+    }
+
+    public @Nullable FoundRowsCache getFoundRowsCache() {
+        return foundRowsCache;
+    }
+
+    /**
+     * Включает оценку общего количества строк по {@code EXPLAIN}: если планировщик оценивает выборку
+     * не менее чем в {@code threshold} строк, то возвращается оценка ({@link FoundRowsAccuracy#ESTIMATED}),
+     * иначе строки подсчитываются точно запросом {@code COUNT(*)}. {@code null} отключает оценку.
+     */
+    public SQLTemplateFactory foundRowsEstimateThreshold(@Nullable Long threshold) {
+        this.foundRowsEstimateThreshold = threshold;
+        return this;
+    }
+
+    public @Nullable Long getFoundRowsEstimateThreshold() {
+        return foundRowsEstimateThreshold;
+    }
+
+    /**
+     * Включает кэш результатов для шаблонов, помеченных {@link SQLTemplate#cacheResult(String...)},
+     * см. {@link QueryResultCache}
+     *
+     * @param maxWeight суммарное количество закэшированных строк
+     */
+    public SQLTemplateFactory resultCache(long ttl, @Nonnull TimeUnit unit, long maxWeight) {
+        this.resultCache = new QueryResultCache(ttl, unit, maxWeight);
+        return this;
+    }
+
+    public @Nullable QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Включает объединение одновременных чтений: если {@link SQLTemplate#executeQuery(SQLTemplate.Mapper)}
+     * с тем же раскрытым запросом, параметрами, {@link SQLTemplate.Mapper} и настройками выполнения
+     * ({@link SQLTemplate#maxRows(int)}) уже выполняется, то вызов не занимает соединение, а дожидается
+     * выполняющегося запроса. Как и без объединения, каждый участник получает собственную копию {@link ResultList}
+     * (элементы списка общие). Не действует для шаблонов {@link SQLSession}.
+     */
+    public SQLTemplateFactory coalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+        return this;
+    }
+
+    public boolean isCoalesceReads() {
+        return coalesceReads;
+    }
+
+    /**
+     * Выполняет {@code query} или дожидается уже выполняющегося запроса с тем же ключом
+     */
+    <T> T coalesce(@Nonnull QueryKey key, @Nonnull Callable<? extends T> query) throws SQLException {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = inFlightReads.putIfAbsent(key, future);
+        if (inFlight == null) {
+            try {
+                future.complete(query.call());
+            }
+            catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+            finally {
+                inFlightReads.remove(key, future);
+            }
+            inFlight = future;
+        }
+        @SuppressWarnings("unchecked")
+        T result = (T) SQLTemplate.await(inFlight);
+        return result;
+    }
+
+    /**
+     * Ограничивает количество одновременно открытых шаблонами соединений; остальные выполнения ожидают
+     * освобождения разрешения до обращения к {@link DataSource#getConnection()}
+     *
+     * @param maxConcurrentConnections количество разрешений, обычно равное размеру пула соединений,
+     *                                 0 снимает ограничение
+     */
+    public SQLTemplateFactory connectionPermits(int maxConcurrentConnections) {
+        if (maxConcurrentConnections < 0) {
+            throw new IllegalArgumentException("Connection permits must be equals or greater than 0, got "
+                                               + maxConcurrentConnections);
+        }
+        this.connectionPermits = maxConcurrentConnections == 0 ? null : new Semaphore(maxConcurrentConnections, true);
+        return this;
+    }
+
+    public @Nullable Semaphore getConnectionPermits() {
+        return connectionPermits;
+    }
+
+    /**
+     * Режим выполнения на виртуальных потоках: асинхронные выполнения запускаются каждое в своем
+     * виртуальном потоке, а количество одновременно открытых соединений ограничивается
+     * {@code maxConcurrentConnections} разрешениями. Внутренние блокировки библиотеки не используют
+     * {@code synchronized} и не закрепляют виртуальный поток за платформенным. Требует Java 21.
+     *
+     * @throws UnsupportedOperationException если виртуальные потоки не поддерживаются средой выполнения
+     */
+    public SQLTemplateFactory virtualThreads(int maxConcurrentConnections) {
+        if (maxConcurrentConnections < 1) {
+            throw new IllegalArgumentException("Connection permits must be equals or greater than 1, got "
+                                               + maxConcurrentConnections);
+        }
+        Executor virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        connectionPermits(maxConcurrentConnections);
+        return executor(virtualThreadExecutor);
+    }
+
+    private static Executor newVirtualThreadPerTaskExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (NoSuchMethodException ex) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this runtime", ex);
+        }
+        catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
     }
 
     public SQLTemplate template(String query) {
-        return new SQLTemplate(query, dataSource);
+        return prepare(query).bind();
+    }
+
+    /**
+     * @see ChunkedInsert
+     */
+    public ChunkedInsert chunkedInsert(String query, String valuesPlaceholderName) {
+        return new ChunkedInsert(prepare(query), valuesPlaceholderName);
+    }
+
+    /**
+     * @see BatchLoader
+     */
+    public <K, V> BatchLoader<K, V> batchLoader(String query, String keysPlaceholderName,
+                                                SQLTemplate.Mapper<? extends K> keyMapper,
+                                                SQLTemplate.Mapper<? extends V> mapper) {
+        return new BatchLoader<>(prepare(query), keysPlaceholderName, keyMapper, mapper);
+    }
+
+    /**
+     * Открывает сессию на одном соединении без управления транзакцией
+     */
+    public SQLSession openSession() throws SQLException {
+        return new SQLSession(this, false);
+    }
+
+    /**
+     * @param transactional если {@code true}, то сессия выполняется в одной транзакции, которая фиксируется
+     *                      через {@link SQLSession#commit()} и откатывается при закрытии сессии без фиксации
+     */
+    public SQLSession openSession(boolean transactional) throws SQLException {
+        return new SQLSession(this, transactional);
     }
 
     public int execute(String query) throws SQLException {
-        return new SQLTemplate(query, dataSource).executeQuery();
+        return template(query).executeQuery();
+    }
+
+    public CompiledTemplate compile(String query) {
+        return prepare(query).getCompiledTemplate();
+    }
+
+    /**
+     * Возвращает разделяемый между потоками {@link PreparedTemplate}; повторные вызовы с тем же запросом
+     * возвращают экземпляр из кэша
+     */
+    public PreparedTemplate prepare(String query) {
+        if (templateCache == null) {
+            return new PreparedTemplate(CompiledTemplate.compile(query), this);
+        }
+        PreparedTemplate preparedTemplate;
+        templateCacheLock.lock();
+        try {
+            preparedTemplate = templateCache.get(query);
+        }
+        finally {
+            templateCacheLock.unlock();
+        }
+        if (preparedTemplate == null) {
+            preparedTemplate = new PreparedTemplate(CompiledTemplate.compile(query), this);
+            templateCacheLock.lock();
+            try {
+                templateCache.put(query, preparedTemplate);
+            }
+            finally {
+                templateCacheLock.unlock();
+            }
+        }
+        return preparedTemplate;
     }
 
     public RuntimeException translate(Exception exception) {
@@ -0,0 +1,575 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Список результата, который после превышения порога по количеству строк или по оценке их размера
+ * ({@link RowCodec#estimateSize(Object)}) сериализует последующие строки во временный файл и читает их обратно
+ * через отображение файла в память. Строки до порога остаются в куче. Файл удаляется при {@link #close()}.
+ * <p>
+ * Список не потокобезопасен, в том числе для чтения, и поддерживает только добавление в конец. После
+ * {@link #close()} чтение и добавление бросают {@link IllegalStateException}.
+ *
+ * @see SQLTemplate#executeQuerySpilling(SQLTemplate.Mapper, RowCodec, int, long)
+ */
+public class SpillingResultList<T> extends AbstractList<T> implements ResultList<T>, AutoCloseable {
+    static final int MAPPING_WINDOW = 1 << 28;
+
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final RowCodec<T> codec;
+    private final int maxHeapRows;
+    private final long maxHeapBytes;
+    private final List<T> heapRows = new ArrayList<>();
+    private final Integer foundRows;
+    private final FoundRowsAccuracy foundRowsAccuracy;
+    private final Long offset;
+    private final Integer limit;
+    private long heapBytes;
+
+    private Path spillPath;
+    private FileChannel spillChannel;
+    private OutputStream spillOutput;
+    private ByteArrayOutputStream rowBuffer;
+    private DataOutputStream rowOutput;
+    private long[] spillOffsets;
+    private int spillSize;
+    private long spillLength;
+    private boolean spillFlushed;
+    private MappedByteBuffer mapping;
+    private long mappingStart;
+    private boolean closed;
+
+    /**
+     * @param maxHeapRows  количество строк, хранимых в куче
+     * @param maxHeapBytes оценка суммарного размера строк в куче, см. {@link RowCodec#estimateSize(Object)}
+     */
+    public SpillingResultList(@Nonnull RowCodec<T> codec, int maxHeapRows, long maxHeapBytes) {
+        this(codec, maxHeapRows, maxHeapBytes, null, null, null, null);
+    }
+
+    public SpillingResultList(@Nonnull RowCodec<T> codec, int maxHeapRows, long maxHeapBytes, Integer foundRows,
+                              FoundRowsAccuracy foundRowsAccuracy, Long offset, Integer limit) {
+        if (maxHeapRows < 0) {
+            throw new IllegalArgumentException("Max heap rows must be equals or greater than 0, got " + maxHeapRows);
+        }
+        if (maxHeapBytes < 0) {
+            throw new IllegalArgumentException("Max heap bytes must be equals or greater than 0, got " + maxHeapBytes);
+        }
+        this.codec = codec;
+        this.maxHeapRows = maxHeapRows;
+        this.maxHeapBytes = maxHeapBytes;
+        this.foundRows = foundRows;
+        this.foundRowsAccuracy = foundRowsAccuracy;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Количество строк, вынесенных во временный файл
+     */
+    public int getSpilledSize() {
+        return spillSize;
+    }
+
+    @Override
+    public boolean add(T row) {
+        checkNotClosed();
+        if (spillChannel == null) {
+            long rowBytes = codec.estimateSize(row);
+            if (heapRows.size() < maxHeapRows && heapBytes + rowBytes <= maxHeapBytes) {
+                heapRows.add(row);
+                heapBytes += rowBytes;
+                modCount++;
+                return true;
+            }
+        }
+        try {
+            spill(row);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        modCount++;
+        return true;
+    }
+
+    private void spill(T row) throws IOException {
+        if (spillChannel == null) {
+            spillPath = Files.createTempFile("sql-spill-", ".bin");
+            spillChannel = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                            StandardOpenOption.DELETE_ON_CLOSE);
+            spillOutput = new BufferedOutputStream(Channels.newOutputStream(spillChannel), 1 << 16);
+            rowBuffer = new ByteArrayOutputStream(256);
+            rowOutput = new DataOutputStream(rowBuffer);
+            spillOffsets = new long[1024];
+        }
+        if (spillSize + 1 >= spillOffsets.length) {
+            spillOffsets = Arrays.copyOf(spillOffsets, spillOffsets.length * 2);
+        }
+        rowBuffer.reset();
+        codec.write(row, rowOutput);
+        rowBuffer.writeTo(spillOutput);
+        spillLength += rowBuffer.size();
+        spillSize++;
+        spillOffsets[spillSize] = spillLength;
+        spillFlushed = false;
+    }
+
+    @Override
+    public T get(int index) {
+        checkNotClosed();
+        if (index < heapRows.size()) {
+            return heapRows.get(index);
+        }
+        int spillIndex = index - heapRows.size();
+        if (spillIndex >= spillSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        try {
+            return codec.read(new DataInputStream(new ByteBufferInputStream(slice(spillOffsets[spillIndex],
+                                                                                  spillOffsets[spillIndex + 1]))));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private ByteBuffer slice(long start, long end) throws IOException {
+        if (!spillFlushed) {
+            spillOutput.flush();
+            spillFlushed = true;
+            unmap();
+        }
+        if (mapping == null || start < mappingStart || end > mappingStart + mapping.capacity()) {
+            long size = Math.max(end - start, Math.min(MAPPING_WINDOW, spillLength - start));
+            unmap();
+            mapping = spillChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            mappingStart = start;
+        }
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position((int) (start - mappingStart));
+        buffer.limit((int) (end - mappingStart));
+        return buffer;
+    }
+
+    @Override
+    public int size() {
+        return heapRows.size() + spillSize;
+    }
+
+    /**
+     * Освобождает отображение и удаляет временный файл. Отображение снимается сразу, если среда выполнения
+     * это позволяет ({@code sun.misc.Unsafe#invokeCleaner}), иначе — сборщиком мусора.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        unmap();
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                Files.deleteIfExists(spillPath);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            finally {
+                spillChannel = null;
+                spillOutput = null;
+                rowBuffer = null;
+                rowOutput = null;
+            }
+        }
+    }
+
+    /**
+     * Снимает текущее отображение; ссылки на него не выходят за пределы {@link #get(int)}, поэтому
+     * обращений к снятому отображению быть не может
+     */
+    private void unmap() {
+        MappedByteBuffer mapping = this.mapping;
+        this.mapping = null;
+        if (mapping != null && INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invokeExact((ByteBuffer) mapping);
+            }
+            catch (Throwable ex) {
+                // отображение будет снято сборщиком мусора
+            }
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                                .findVirtual(unsafeClass, "invokeCleaner",
+                                             MethodType.methodType(void.class, ByteBuffer.class))
+                                .bindTo(theUnsafe.get(null));
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("List is closed");
+        }
+    }
+
+    @Override
+    public Long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Integer getLimit() {
+        return limit;
+    }
+
+    @Override
+    public Integer getFoundRows() {
+        return foundRows;
+    }
+
+    @Override
+    public FoundRowsAccuracy getFoundRowsAccuracy() {
+        return foundRows == null ? null : foundRowsAccuracy;
+    }
+
+    /**
+     * Сериализация строк для {@link SpillingResultList}
+     */
+    public interface RowCodec<T> {
+        void write(T row, @Nonnull DataOutput output) throws IOException;
+
+        T read(@Nonnull DataInput input) throws IOException;
+
+        /**
+         * Оценка размера строки в куче в байтах; 0 отключает ограничение по размеру
+         */
+        default long estimateSize(T row) {
+            return 0;
+        }
+    }
+
+    /**
+     * Кодек строк {@link SQLMappers#ROW_TO_ARRAY}: каждое значение записывается байтом типа и компактным
+     * представлением; поддерживаются {@code null}, числа (включая {@link BigInteger}), строки, {@link Boolean},
+     * {@code byte[]}, {@code java.sql} и {@code java.time} даты и {@link UUID}, остальные {@link Serializable}
+     * значения записываются стандартной сериализацией
+     */
+    public static final RowCodec<Object[]> OBJECT_ARRAY_CODEC = new RowCodec<Object[]>() {
+        private static final byte NULL = 0;
+        private static final byte INTEGER = 1;
+        private static final byte LONG = 2;
+        private static final byte DOUBLE = 3;
+        private static final byte FLOAT = 4;
+        private static final byte SHORT = 5;
+        private static final byte BYTE = 6;
+        private static final byte BOOLEAN = 7;
+        private static final byte STRING = 8;
+        private static final byte BIG_DECIMAL = 9;
+        private static final byte BYTES = 10;
+        private static final byte TIMESTAMP = 11;
+        private static final byte DATE = 12;
+        private static final byte TIME = 13;
+        private static final byte BIG_INTEGER = 14;
+        private static final byte LOCAL_DATE = 15;
+        private static final byte LOCAL_TIME = 16;
+        private static final byte LOCAL_DATE_TIME = 17;
+        private static final byte INSTANT = 18;
+        private static final byte OFFSET_DATE_TIME = 19;
+        private static final byte UUID_VALUE = 20;
+        private static final byte SERIALIZABLE = 21;
+
+        @Override
+        public void write(Object[] row, @Nonnull DataOutput output) throws IOException {
+            output.writeShort(row.length);
+            for (Object value : row) {
+                if (value == null) {
+                    output.writeByte(NULL);
+                }
+                else if (value instanceof Integer) {
+                    output.writeByte(INTEGER);
+                    output.writeInt((Integer) value);
+                }
+                else if (value instanceof Long) {
+                    output.writeByte(LONG);
+                    output.writeLong((Long) value);
+                }
+                else if (value instanceof Double) {
+                    output.writeByte(DOUBLE);
+                    output.writeDouble((Double) value);
+                }
+                else if (value instanceof Float) {
+                    output.writeByte(FLOAT);
+                    output.writeFloat((Float) value);
+                }
+                else if (value instanceof Short) {
+                    output.writeByte(SHORT);
+                    output.writeShort((Short) value);
+                }
+                else if (value instanceof Byte) {
+                    output.writeByte(BYTE);
+                    output.writeByte((Byte) value);
+                }
+                else if (value instanceof Boolean) {
+                    output.writeByte(BOOLEAN);
+                    output.writeBoolean((Boolean) value);
+                }
+                else if (value instanceof String) {
+                    output.writeByte(STRING);
+                    writeBytes(output, ((String) value).getBytes(StandardCharsets.UTF_8));
+                }
+                else if (value instanceof BigDecimal) {
+                    output.writeByte(BIG_DECIMAL);
+                    output.writeInt(((BigDecimal) value).scale());
+                    writeBytes(output, ((BigDecimal) value).unscaledValue().toByteArray());
+                }
+                else if (value instanceof byte[]) {
+                    output.writeByte(BYTES);
+                    writeBytes(output, (byte[]) value);
+                }
+                else if (value instanceof Timestamp) {
+                    output.writeByte(TIMESTAMP);
+                    output.writeLong(((Timestamp) value).getTime());
+                    output.writeInt(((Timestamp) value).getNanos());
+                }
+                else if (value instanceof java.sql.Date) {
+                    output.writeByte(DATE);
+                    output.writeLong(((java.sql.Date) value).getTime());
+                }
+                else if (value instanceof Time) {
+                    output.writeByte(TIME);
+                    output.writeLong(((Time) value).getTime());
+                }
+                else if (value instanceof BigInteger) {
+                    output.writeByte(BIG_INTEGER);
+                    writeBytes(output, ((BigInteger) value).toByteArray());
+                }
+                else if (value instanceof LocalDate) {
+                    output.writeByte(LOCAL_DATE);
+                    output.writeLong(((LocalDate) value).toEpochDay());
+                }
+                else if (value instanceof LocalTime) {
+                    output.writeByte(LOCAL_TIME);
+                    output.writeLong(((LocalTime) value).toNanoOfDay());
+                }
+                else if (value instanceof LocalDateTime) {
+                    output.writeByte(LOCAL_DATE_TIME);
+                    writeLocalDateTime(output, (LocalDateTime) value);
+                }
+                else if (value instanceof Instant) {
+                    output.writeByte(INSTANT);
+                    output.writeLong(((Instant) value).getEpochSecond());
+                    output.writeInt(((Instant) value).getNano());
+                }
+                else if (value instanceof OffsetDateTime) {
+                    output.writeByte(OFFSET_DATE_TIME);
+                    writeLocalDateTime(output, ((OffsetDateTime) value).toLocalDateTime());
+                    output.writeInt(((OffsetDateTime) value).getOffset().getTotalSeconds());
+                }
+                else if (value instanceof UUID) {
+                    output.writeByte(UUID_VALUE);
+                    output.writeLong(((UUID) value).getMostSignificantBits());
+                    output.writeLong(((UUID) value).getLeastSignificantBits());
+                }
+                else if (value instanceof Serializable) {
+                    output.writeByte(SERIALIZABLE);
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+                        objectOutput.writeObject(value);
+                    }
+                    writeBytes(output, bytes.toByteArray());
+                }
+                else {
+                    throw new IllegalArgumentException("Unsupported value type " + value.getClass());
+                }
+            }
+        }
+
+        @Override
+        public Object[] read(@Nonnull DataInput input) throws IOException {
+            Object[] row = new Object[input.readUnsignedShort()];
+            for (int i = 0; i < row.length; i++) {
+                byte type = input.readByte();
+                switch (type) {
+                    case NULL:
+                        break;
+                    case INTEGER:
+                        row[i] = input.readInt();
+                        break;
+                    case LONG:
+                        row[i] = input.readLong();
+                        break;
+                    case DOUBLE:
+                        row[i] = input.readDouble();
+                        break;
+                    case FLOAT:
+                        row[i] = input.readFloat();
+                        break;
+                    case SHORT:
+                        row[i] = input.readShort();
+                        break;
+                    case BYTE:
+                        row[i] = input.readByte();
+                        break;
+                    case BOOLEAN:
+                        row[i] = input.readBoolean();
+                        break;
+                    case STRING:
+                        row[i] = new String(readBytes(input), StandardCharsets.UTF_8);
+                        break;
+                    case BIG_DECIMAL:
+                        int scale = input.readInt();
+                        row[i] = new BigDecimal(new BigInteger(readBytes(input)), scale);
+                        break;
+                    case BYTES:
+                        row[i] = readBytes(input);
+                        break;
+                    case TIMESTAMP:
+                        Timestamp timestamp = new Timestamp(input.readLong());
+                        timestamp.setNanos(input.readInt());
+                        row[i] = timestamp;
+                        break;
+                    case DATE:
+                        row[i] = new java.sql.Date(input.readLong());
+                        break;
+                    case TIME:
+                        row[i] = new Time(input.readLong());
+                        break;
+                    case BIG_INTEGER:
+                        row[i] = new BigInteger(readBytes(input));
+                        break;
+                    case LOCAL_DATE:
+                        row[i] = LocalDate.ofEpochDay(input.readLong());
+                        break;
+                    case LOCAL_TIME:
+                        row[i] = LocalTime.ofNanoOfDay(input.readLong());
+                        break;
+                    case LOCAL_DATE_TIME:
+                        row[i] = readLocalDateTime(input);
+                        break;
+                    case INSTANT:
+                        row[i] = Instant.ofEpochSecond(input.readLong(), input.readInt());
+                        break;
+                    case OFFSET_DATE_TIME:
+                        LocalDateTime localDateTime = readLocalDateTime(input);
+                        row[i] = OffsetDateTime.of(localDateTime, ZoneOffset.ofTotalSeconds(input.readInt()));
+                        break;
+                    case UUID_VALUE:
+                        row[i] = new UUID(input.readLong(), input.readLong());
+                        break;
+                    case SERIALIZABLE:
+                        try (ObjectInputStream objectInput = new ObjectInputStream(
+                                new ByteArrayInputStream(readBytes(input)))) {
+                            row[i] = objectInput.readObject();
+                        }
+                        catch (ClassNotFoundException ex) {
+                            throw new IOException(ex);
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown value type " + type);
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public long estimateSize(Object[] row) {
+            long size = 16 + 8L * row.length;
+            for (Object value : row) {
+                if (value instanceof String) {
+                    size += 40 + 2L * ((String) value).length();
+                }
+                else if (value instanceof byte[]) {
+                    size += 16 + ((byte[]) value).length;
+                }
+                else if (value instanceof BigDecimal || value instanceof BigInteger) {
+                    size += 64;
+                }
+                else if (value != null) {
+                    size += 24;
+                }
+            }
+            return size;
+        }
+
+        private void writeLocalDateTime(DataOutput output, LocalDateTime value) throws IOException {
+            output.writeLong(value.toLocalDate().toEpochDay());
+            output.writeLong(value.toLocalTime().toNanoOfDay());
+        }
+
+        private LocalDateTime readLocalDateTime(DataInput input) throws IOException {
+            return LocalDateTime.of(LocalDate.ofEpochDay(input.readLong()), LocalTime.ofNanoOfDay(input.readLong()));
+        }
+
+        private void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        private byte[] readBytes(DataInput input) throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return bytes;
+        }
+    };
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
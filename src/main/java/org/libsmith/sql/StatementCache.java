@@ -0,0 +1,282 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU кэш {@link PreparedStatement}, привязанный к физическим соединениям (см. {@link Connection#unwrap(Class)}).
+ * Ключом служит раскрытый текст запроса и флаг получения сгенерированных ключей.
+ * <p>
+ * Statement'ы создаются на переданном логическом соединении, чтобы пул или прокси над драйвером видели их
+ * и могли закрыть при закрытии соединения; закрытый так statement при следующем обращении подготавливается
+ * заново. Кэши закрытых физических соединений удаляются при каждом возврате statement'а.
+ * <p>
+ * Выданный statement изымается из кэша до возврата через {@link Lease#close()}, поэтому одновременные
+ * выполнения одного и того же запроса на одном соединении получают разные statement'ы.
+ */
+public class StatementCache {
+    private static final Logger LOG = Logger.getLogger(StatementCache.class.getName());
+
+    private final int maxStatementsPerConnection;
+    private final Map<Connection, LRUCache<Key, PreparedStatement>> connectionCaches = new IdentityHashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public StatementCache(int maxStatementsPerConnection) {
+        if (maxStatementsPerConnection < 1) {
+            throw new IllegalArgumentException("Statement cache size must be equals or greater than 1, got "
+                                               + maxStatementsPerConnection);
+        }
+        this.maxStatementsPerConnection = maxStatementsPerConnection;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getMaxStatementsPerConnection() {
+        return maxStatementsPerConnection;
+    }
+
+    /**
+     * Количество физических соединений, для которых в кэше есть statement'ы
+     */
+    public int getConnectionCount() {
+        lock.lock();
+        try {
+            return connectionCaches.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Nonnull Lease prepare(@Nonnull Connection connection, @Nonnull String query,
+                           boolean fetchGeneratedKey) throws SQLException {
+        return prepare(connection, query, fetchGeneratedKey, 0, 0, 0);
+    }
+
+    /**
+     * @param resultSetType тип курсора или 0 для значения по умолчанию
+     * @param resultSetConcurrency режим курсора или 0 для значения по умолчанию
+     * @param resultSetHoldability holdability курсора или 0 для значения по умолчанию
+     */
+    @Nonnull Lease prepare(@Nonnull Connection connection, @Nonnull String query, boolean fetchGeneratedKey,
+                           int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        Connection physicalConnection = SQLTemplate.unwrap(connection);
+        Key key = new Key(query, fetchGeneratedKey, resultSetType, resultSetConcurrency, resultSetHoldability);
+        PreparedStatement ps;
+        lock.lock();
+        try {
+            LRUCache<Key, PreparedStatement> cache = connectionCaches.get(physicalConnection);
+            ps = cache == null ? null : cache.remove(key);
+        }
+        finally {
+            lock.unlock();
+        }
+        if (ps != null && !ps.isClosed()) {
+            hits.increment();
+        }
+        else {
+            misses.increment();
+            ps = createStatement(connection, query, fetchGeneratedKey,
+                                 resultSetType, resultSetConcurrency, resultSetHoldability);
+        }
+        return new Lease(ps, physicalConnection, key, this);
+    }
+
+    static @Nonnull PreparedStatement createStatement(@Nonnull Connection connection, @Nonnull String query,
+                                                      boolean fetchGeneratedKey, int resultSetType,
+                                                      int resultSetConcurrency,
+                                                      int resultSetHoldability) throws SQLException {
+        if (fetchGeneratedKey || (resultSetType == 0 && resultSetConcurrency == 0 && resultSetHoldability == 0)) {
+            return connection.prepareStatement(query, fetchGeneratedKey ? Statement.RETURN_GENERATED_KEYS
+                                                                        : Statement.NO_GENERATED_KEYS);
+        }
+        int type = resultSetType == 0 ? ResultSet.TYPE_FORWARD_ONLY : resultSetType;
+        int concurrency = resultSetConcurrency == 0 ? ResultSet.CONCUR_READ_ONLY : resultSetConcurrency;
+        if (resultSetHoldability == 0) {
+            return connection.prepareStatement(query, type, concurrency);
+        }
+        return connection.prepareStatement(query, type, concurrency, resultSetHoldability);
+    }
+
+    private void release(@Nonnull Lease lease) throws SQLException {
+        PreparedStatement ps = lease.statement;
+        boolean reusable = !ps.isClosed() && !lease.physicalConnection.isClosed();
+        if (reusable) {
+            ps.clearParameters();
+            ps.setFetchSize(0);
+            ps.setMaxRows(0);
+        }
+        PreparedStatement displaced;
+        lock.lock();
+        try {
+            purgeClosedConnections();
+            if (!reusable) {
+                return;
+            }
+            LRUCache<Key, PreparedStatement> cache = connectionCaches.get(lease.physicalConnection);
+            if (cache == null) {
+                cache = new LRUCache<Key, PreparedStatement>(maxStatementsPerConnection) {
+                    private static final long serialVersionUID = 6416409152393573497L;
+
+                    @Override
+                    protected void onEviction(Key key, PreparedStatement statement) {
+                        evictions.increment();
+                        closeQuietly(statement);
+                    }
+                };
+                connectionCaches.put(lease.physicalConnection, cache);
+            }
+            displaced = cache.put(lease.key, ps);
+        }
+        finally {
+            lock.unlock();
+        }
+        if (displaced != null && displaced != ps) {
+            closeQuietly(displaced);
+        }
+    }
+
+    /**
+     * Закрывает и удаляет из кэша все statement'ы
+     */
+    public void clear() {
+        List<PreparedStatement> statements = new ArrayList<>();
+        lock.lock();
+        try {
+            for (LRUCache<Key, PreparedStatement> cache : connectionCaches.values()) {
+                statements.addAll(cache.values());
+            }
+            connectionCaches.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+        for (PreparedStatement statement : statements) {
+            closeQuietly(statement);
+        }
+    }
+
+    private void purgeClosedConnections() {
+        for (Iterator<Connection> iterator = connectionCaches.keySet().iterator(); iterator.hasNext(); ) {
+            try {
+                if (iterator.next().isClosed()) {
+                    iterator.remove();
+                }
+            }
+            catch (SQLException ex) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        }
+        catch (SQLException ex) {
+            LOG.log(Level.FINE, "Exception catched (and ignored) at cached statement close", ex);
+        }
+    }
+
+    private static final class Key {
+        private final String query;
+        private final boolean fetchGeneratedKey;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final int resultSetHoldability;
+
+        private Key(String query, boolean fetchGeneratedKey,
+                    int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+            this.query = query;
+            this.fetchGeneratedKey = fetchGeneratedKey;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.resultSetHoldability = resultSetHoldability;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return fetchGeneratedKey == that.fetchGeneratedKey
+                   && resultSetType == that.resultSetType
+                   && resultSetConcurrency == that.resultSetConcurrency
+                   && resultSetHoldability == that.resultSetHoldability
+                   && query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, fetchGeneratedKey, resultSetType, resultSetConcurrency, resultSetHoldability);
+        }
+    }
+
+    /**
+     * Statement, выданный на время одного выполнения. Закрытие возвращает его в кэш, если он есть,
+     * либо закрывает сам statement.
+     */
+    static class Lease implements AutoCloseable {
+        private final PreparedStatement statement;
+        private final Connection physicalConnection;
+        private final Key key;
+        private final StatementCache owner;
+
+        private Lease(PreparedStatement statement, Connection physicalConnection, Key key, StatementCache owner) {
+            this.statement = statement;
+            this.physicalConnection = physicalConnection;
+            this.key = key;
+            this.owner = owner;
+        }
+
+        static @Nonnull Lease uncached(@Nonnull PreparedStatement statement) {
+            return new Lease(statement, null, null, null);
+        }
+
+        @Nonnull PreparedStatement getStatement() {
+            return statement;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (owner == null) {
+                statement.close();
+            }
+            else {
+                owner.release(this);
+            }
+        }
+    }
+}
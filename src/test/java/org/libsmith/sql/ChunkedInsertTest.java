@@ -0,0 +1,110 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedInsertTest {
+    private static final String QUERY = "INSERT INTO t (a, b) VALUES (:values) ON DUPLICATE KEY UPDATE updated = :now";
+
+    private final StubDataSource dataSource = new StubDataSource();
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(dataSource);
+
+    private static List<Object[]> rows(int count) {
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            rows[i] = new Object[] { i, "row " + i };
+        }
+        return Arrays.asList(rows);
+    }
+
+    @Test
+    public void bindsSharedParametersToEveryChunk() throws Exception {
+        factory.chunkedInsert(QUERY, "values").chunkSize(2).parameter("now", 42).execute(rows(3));
+
+        assertEquals(2, dataSource.executions.size());
+        assertEquals("INSERT INTO t (a, b) VALUES (?, ?),\n    (?, ?) ON DUPLICATE KEY UPDATE updated = ?",
+                     dataSource.executions.get(0).sql);
+        assertEquals("INSERT INTO t (a, b) VALUES (?, ?) ON DUPLICATE KEY UPDATE updated = ?",
+                     dataSource.executions.get(1).sql);
+        assertEquals(Arrays.asList(0, "row 0", 1, "row 1", 42), dataSource.executions.get(0).getParameters());
+        assertEquals(Arrays.asList(2, "row 2", 42), dataSource.executions.get(1).getParameters());
+    }
+
+    @Test
+    public void fullChunksShareOneBatch() throws Exception {
+        factory.chunkedInsert(QUERY, "values").chunkSize(2).parameter("now", 42).execute(rows(8));
+        assertEquals(Arrays.asList(4), dataSource.batches);
+
+        dataSource.batches.clear();
+        factory.chunkedInsert(QUERY, "values").chunkSize(2).batchSize(3).parameter("now", 42).execute(rows(9));
+        assertEquals(Arrays.asList(3, 1, 1), dataSource.batches);
+    }
+
+    @Test
+    public void sharedParametersCountAgainstMaxParameters() throws Exception {
+        factory.chunkedInsert(QUERY, "values").maxParameters(5).parameter("now", 42).execute(rows(5));
+
+        assertEquals(3, dataSource.executions.size());
+        for (StubDataSource.Execution execution : dataSource.executions) {
+            assertTrue(execution.getParameters().size() <= 5);
+        }
+    }
+
+    @Test
+    public void fragmentValuesCountTheirParameters() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            rows.add(new Object[] { new SQLFragment.Impl("COALESCE(?, ?, ?)", Arrays.asList(i, 0, -1)), "row " + i });
+        }
+        factory.chunkedInsert("INSERT INTO t (a, b) VALUES (:values)", "values").maxParameters(8).execute(rows);
+
+        assertEquals(2, dataSource.executions.size());
+        assertEquals("INSERT INTO t (a, b) VALUES (COALESCE(?, ?, ?), ?),\n    (COALESCE(?, ?, ?), ?)",
+                     dataSource.executions.get(0).sql);
+        for (StubDataSource.Execution execution : dataSource.executions) {
+            assertEquals(8, execution.getParameters().size());
+        }
+    }
+
+    @Test
+    public void rejectedParallelTaskCancelsSubmittedChunks() throws Exception {
+        List<Runnable> accepted = new ArrayList<>();
+        Executor executor = task -> {
+            if (!accepted.isEmpty()) {
+                throw new RejectedExecutionException();
+            }
+            accepted.add(task);
+        };
+        try {
+            factory.chunkedInsert(QUERY, "values").chunkSize(1).parameter("now", 42)
+                   .parallel(executor, 2)
+                   .execute(rows(4));
+            fail();
+        }
+        catch (RejectedExecutionException expected) {
+            assertTrue(((FutureTask<?>) accepted.get(0)).isCancelled());
+        }
+        accepted.get(0).run();
+        assertEquals(0, dataSource.executions.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownParameter() {
+        factory.chunkedInsert(QUERY, "values").parameter("later", 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsChunkPlaceholderAsParameter() {
+        factory.chunkedInsert(QUERY, "values").parameter("values", 1);
+    }
+}
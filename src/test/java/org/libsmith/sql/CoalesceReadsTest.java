@@ -0,0 +1,78 @@
+package org.libsmith.sql;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class CoalesceReadsTest {
+    private static final SQLTemplate.Mapper<Integer> ID_MAPPER = rs -> rs.getInt("id");
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger queries = new AtomicInteger();
+    private final StubDataSource dataSource = new StubDataSource().rows(sql -> {
+        if (queries.getAndIncrement() == 0) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new StubDataSource.Rows("id").row(1).row(2).row(3);
+    });
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(dataSource).coalesceReads(true);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private Future<ResultList<Integer>> select(Integer maxRows) {
+        return executor.submit(() -> {
+            SQLTemplate template = factory.template("SELECT id FROM t");
+            return (maxRows == null ? template : template.maxRows(maxRows)).executeQuery(ID_MAPPER);
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentCallersShareOneQueryAndGetOwnCopies() throws Exception {
+        Future<ResultList<Integer>> first = select(null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<ResultList<Integer>> second = select(null);
+        Thread.sleep(200);
+        release.countDown();
+
+        ResultList<Integer> firstList = first.get();
+        ResultList<Integer> secondList = second.get();
+        assertEquals(1, dataSource.executions.size());
+        assertEquals(Arrays.asList(1, 2, 3), firstList);
+        assertNotSame(firstList, secondList);
+        firstList.add(4);
+        assertEquals(Arrays.asList(1, 2, 3), secondList);
+    }
+
+    @Test(timeout = 10000)
+    public void differentMaxRowsAreNotCoalesced() throws Exception {
+        Future<ResultList<Integer>> unbounded = select(null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1), select(1).get(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals(Arrays.asList(1, 2, 3), unbounded.get());
+        assertEquals(2, dataSource.executions.size());
+    }
+}
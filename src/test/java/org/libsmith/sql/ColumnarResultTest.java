@@ -0,0 +1,59 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarResultTest {
+    private static final BigInteger MAX_UNSIGNED_BIGINT = new BigInteger("18446744073709551615");
+
+    private final StubDataSource dataSource = new StubDataSource().rows(
+            new StubDataSource.Rows("id", "name", "score", "counter", "hash", "big")
+                    .type(1, Types.INTEGER, true)
+                    .type(2, Types.VARCHAR, true)
+                    .type(3, Types.DOUBLE, true)
+                    .type(4, Types.INTEGER, false)
+                    .type(5, Types.BIGINT, false)
+                    .type(6, Types.BIGINT, true)
+                    .row(1, "a", 1.5, 4294967295L, MAX_UNSIGNED_BIGINT, Long.MAX_VALUE)
+                    .row(2, null, null, null, null, null));
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(dataSource);
+
+    @Test
+    public void storesColumnsByType() throws Exception {
+        ColumnarResult result = factory.template("SELECT * FROM t").executeQueryColumnar();
+        assertEquals(2, result.size());
+        assertEquals(6, result.getColumnCount());
+        assertEquals(3, result.findColumn("SCORE"));
+        assertTrue(result.getColumn(1).get(0) instanceof Integer);
+        assertEquals(Arrays.asList("a", null), result.getColumn(2));
+        assertEquals(1.5, result.get(0).getDouble("score"), 0);
+        assertTrue(result.get(1).isNull(3));
+        assertEquals(0, result.getInt(1, 3));
+        assertEquals(Long.MAX_VALUE, result.get(0).getLong("big"));
+        assertNull(result.get(1).getObject("big"));
+    }
+
+    @Test
+    public void widensUnsignedColumns() throws Exception {
+        ColumnarResult result = factory.template("SELECT * FROM t").executeQueryColumnar();
+        assertEquals(4294967295L, result.get(0).getLong("counter"));
+        assertEquals(4294967295L, result.getObject(0, 4));
+        assertEquals(MAX_UNSIGNED_BIGINT, result.get(0).getObject("hash"));
+        assertTrue(result.get(1).isNull(5));
+    }
+
+    @Test
+    public void rowToMap() throws Exception {
+        ColumnarResult result = factory.template("SELECT * FROM t").executeQueryColumnar();
+        assertEquals("a", result.get(0).toMap().get("name"));
+        assertEquals(Collections.singletonList(2), result.getColumn(1).subList(1, 2));
+    }
+}
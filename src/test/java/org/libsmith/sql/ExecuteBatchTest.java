@@ -0,0 +1,76 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ExecuteBatchTest {
+    private final StubDataSource dataSource = new StubDataSource();
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(dataSource);
+
+    private static List<Map<String, ?>> rows(int count) {
+        List<Map<String, ?>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(Collections.singletonMap("id", i));
+        }
+        return rows;
+    }
+
+    @Test
+    public void splitsRowsIntoBatchesOfBatchSize() throws Exception {
+        int[] updateCounts = factory.template("UPDATE t SET a = :a WHERE id = :id").parameter("a", 7)
+                                    .executeBatch(rows(5), 2);
+
+        assertEquals(Arrays.asList(2, 2, 1), dataSource.batches);
+        assertArrayEquals(new int[] { 1, 1, 1, 1, 1 }, updateCounts);
+        assertEquals(Arrays.asList(7, 4), dataSource.executions.get(4).getParameters());
+    }
+
+    @Test
+    public void changedQueryTextStartsNewBatch() throws Exception {
+        List<Map<String, ?>> rows = Arrays.asList(Collections.singletonMap("ids", Arrays.asList(1)),
+                                                  Collections.singletonMap("ids", Arrays.asList(2)),
+                                                  Collections.singletonMap("ids", Arrays.asList(3, 4)));
+        int[] updateCounts = factory.template("DELETE FROM t WHERE id IN (:ids)").executeBatch(rows);
+
+        assertEquals(Arrays.asList(2, 1), dataSource.batches);
+        assertArrayEquals(new int[] { 1, 1, 1 }, updateCounts);
+        assertEquals("DELETE FROM t WHERE id IN (?, ?)", dataSource.executions.get(2).sql);
+    }
+
+    @Test
+    public void failureKeepsUpdateCountsOfPreviousBatches() throws Exception {
+        dataSource.failingBatchRow = 3;
+        SQLTemplate template = factory.template("UPDATE t SET a = 1 WHERE id = :id");
+        try {
+            template.executeBatch(rows(5), 2);
+            fail();
+        }
+        catch (BatchUpdateException ex) {
+            assertArrayEquals(new int[] { 1, 1, 1 }, ex.getUpdateCounts());
+        }
+        assertEquals(0, dataSource.openConnections.get());
+    }
+
+    @Test
+    public void rejectsUnknownRowKey() throws Exception {
+        try {
+            factory.template("UPDATE t SET a = 1 WHERE id = :id")
+                   .executeBatch(Collections.singletonList(Collections.singletonMap("idd", 1)));
+            fail();
+        }
+        catch (IllegalArgumentException expected) {
+            assertEquals(0, dataSource.batches.size());
+            assertEquals(0, dataSource.openConnections.get());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.libsmith.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Аллокации на вложения {@link ExtendedResultSet}: обычный запрос кладет {@code null} в FOUND_ROWS, запрос
+ * с подсчетом строк кладет одно значение. {@code hashMap*} повторяют прежнее хранение в {@link HashMap}.
+ * Запускать с {@code -prof gc}, чтобы видеть {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtendedResultSetAttachmentBenchmark {
+    private static final ExtendedResultSet.AttachmentKey<Integer> FOUND_ROWS = new ExtendedResultSet.AttachmentKey<>();
+    private static final Integer VALUE = 42;
+
+    private final Integer nullValue = null;
+
+    @Benchmark
+    public Integer nullAttachment() {
+        ExtendedResultSet resultSet = new ExtendedResultSet(null);
+        resultSet.putAttachment(FOUND_ROWS, nullValue);
+        return resultSet.getAttachment(FOUND_ROWS);
+    }
+
+    @Benchmark
+    public Integer singleAttachment() {
+        ExtendedResultSet resultSet = new ExtendedResultSet(null);
+        resultSet.putAttachment(FOUND_ROWS, VALUE);
+        return resultSet.getAttachment(FOUND_ROWS);
+    }
+
+    @Benchmark
+    public Object hashMapNullAttachment() {
+        Map<Object, Object> attachments = new HashMap<>();
+        attachments.put(FOUND_ROWS, nullValue);
+        return attachments.get(FOUND_ROWS);
+    }
+
+    @Benchmark
+    public Object hashMapSingleAttachment() {
+        Map<Object, Object> attachments = new HashMap<>();
+        attachments.put(FOUND_ROWS, VALUE);
+        return attachments.get(FOUND_ROWS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExtendedResultSetAttachmentBenchmark.class.getSimpleName())
+                                       .addProfiler("gc")
+                                       .build()).run();
+    }
+}
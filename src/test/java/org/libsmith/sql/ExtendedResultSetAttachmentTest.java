@@ -0,0 +1,39 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExtendedResultSetAttachmentTest {
+    private static final ExtendedResultSet.AttachmentKey<Integer> FIRST = new ExtendedResultSet.AttachmentKey<>();
+    private static final ExtendedResultSet.AttachmentKey<String> SECOND = new ExtendedResultSet.AttachmentKey<>();
+
+    private final ExtendedResultSet resultSet = new ExtendedResultSet(null);
+
+    @Test
+    public void missingAttachmentIsNull() {
+        assertNull(resultSet.getAttachment(FIRST));
+        resultSet.putAttachment(SECOND, null);
+        assertNull(resultSet.getAttachment(SECOND));
+    }
+
+    @Test
+    public void attachmentsAreKeptPerKey() {
+        resultSet.putAttachment(SECOND, "value");
+        resultSet.putAttachment(FIRST, 1);
+
+        assertEquals(Integer.valueOf(1), resultSet.getAttachment(FIRST));
+        assertEquals("value", resultSet.getAttachment(SECOND));
+    }
+
+    @Test
+    public void attachmentCanBeReplacedAndCleared() {
+        resultSet.putAttachment(FIRST, 1);
+        resultSet.putAttachment(FIRST, 2);
+        assertEquals(Integer.valueOf(2), resultSet.getAttachment(FIRST));
+
+        resultSet.putAttachment(FIRST, null);
+        assertNull(resultSet.getAttachment(FIRST));
+    }
+}
@@ -0,0 +1,26 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExtendedResultSetTest {
+    private final ExtendedResultSet resultSet = new ExtendedResultSet(
+            StubDataSource.resultSet(new StubDataSource.Rows("userId", "ID", "id", "Name"), null));
+
+    @Test
+    public void findsColumnByLabelInAnyCase() throws Exception {
+        assertEquals(1, resultSet.findColumn("userId"));
+        assertEquals(1, resultSet.findColumn("userid"));
+        assertEquals(1, resultSet.findColumn("USERID"));
+        assertEquals(1, resultSet.findColumn("USERID"));
+        assertEquals(4, resultSet.findColumn("Name"));
+    }
+
+    @Test
+    public void duplicateLabelsResolveToFirstColumn() throws Exception {
+        assertEquals(2, resultSet.findColumn("ID"));
+        assertEquals(2, resultSet.findColumn("id"));
+        assertEquals(2, resultSet.findColumn("Id"));
+    }
+}
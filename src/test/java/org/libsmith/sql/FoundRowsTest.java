@@ -0,0 +1,170 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FoundRowsTest {
+    private static final String QUERY = "SELECT :select FROM t WHERE a = :a ORDER BY :order LIMIT :limit";
+
+    private static StubDataSource dataSource() {
+        return new StubDataSource().rows(sql -> sql.startsWith("SELECT COUNT(*)")
+                                                ? new StubDataSource.Rows("COUNT(*)").row(42)
+                                                : new StubDataSource.Rows("id", "id").row(1, 1));
+    }
+
+    private static SQLTemplate template(SQLTemplateFactory factory, SQLSelect select) {
+        return template(factory, QUERY, select);
+    }
+
+    private static SQLTemplate template(SQLTemplateFactory factory, String query, SQLSelect select) {
+        return factory.template(query)
+                      .parameter("select", select)
+                      .parameter("a", 7)
+                      .parameter("order", new SQLOrder().by("id"))
+                      .parameter("limit", SQLLimit.parameterized(20, 10));
+    }
+
+    private static SQLSelect select() {
+        return new SQLSelect(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS).columns("t.id", "u.id");
+    }
+
+    @Test
+    public void countQueryReplacesColumnsAndDropsOrderAndLimit() throws Exception {
+        StubDataSource dataSource = dataSource();
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+                .foundRowsStrategy(FoundRowsStrategy.COUNT_QUERY);
+        ResultList<Integer> list = template(factory, select())
+                .executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt(1));
+
+        assertEquals(Integer.valueOf(42), list.getFoundRows());
+        assertEquals("SELECT COUNT(*) FROM (SELECT 1 FROM t WHERE a = ?) AS found_rows",
+                     dataSource.statements().get(1));
+        assertEquals(Arrays.asList(7), dataSource.executions.get(1).getParameters());
+    }
+
+    @Test
+    public void countQueryKeepsColumnsForDistinct() throws Exception {
+        StubDataSource dataSource = dataSource();
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+                .foundRowsStrategy(FoundRowsStrategy.COUNT_QUERY);
+        template(factory, select().qualifiers(SQLSelect.MySQLHint.DISTINCT))
+                .executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt(1));
+
+        String countQuery = dataSource.statements().get(1);
+        assertEquals("SELECT COUNT(*) FROM (SELECT DISTINCT ", countQuery.substring(0, 38));
+        assertEquals(false, countQuery.contains("ORDER BY"));
+    }
+
+    private static String countQuery(String query, SQLSelect select) throws Exception {
+        StubDataSource dataSource = dataSource();
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+                .foundRowsStrategy(FoundRowsStrategy.COUNT_QUERY);
+        template(factory, query, select).executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt(1));
+        return dataSource.statements().get(1);
+    }
+
+    @Test
+    public void countQueryKeepsColumnsForGroupBy() throws Exception {
+        SQLSelect select = new SQLSelect(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS).columns("DATE(created) AS day");
+        assertEquals("SELECT COUNT(*) FROM (SELECT DATE(created) AS day FROM t WHERE a = ? GROUP BY day) AS found_rows",
+                     countQuery("SELECT :select FROM t WHERE a = :a GROUP BY day ORDER BY :order LIMIT :limit",
+                                select));
+    }
+
+    @Test
+    public void countQueryKeepsAggregateColumns() throws Exception {
+        SQLSelect select = new SQLSelect(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS).columns("MAX(x)");
+        assertEquals("SELECT COUNT(*) FROM (SELECT MAX(x) FROM t WHERE a = ?) AS found_rows",
+                     countQuery(QUERY, select));
+        assertEquals("SELECT COUNT(*) FROM (SELECT 1, MAX(y) FROM t WHERE a = ?) AS found_rows",
+                     countQuery("SELECT :select, MAX(y) FROM t WHERE a = :a ORDER BY :order LIMIT :limit",
+                                new SQLSelect(SQLSelect.MySQLHint.SQL_CALC_FOUND_ROWS).columns("1")));
+    }
+
+    @Test
+    public void countQueryKeepsOrderByWithLiteralColumns() throws Exception {
+        assertEquals("SELECT COUNT(*) FROM (SELECT 1 FROM t WHERE a = ? ORDER BY id ASC, name DESC) AS found_rows",
+                     countQuery("SELECT :select FROM t WHERE a = :a ORDER BY :order, name DESC LIMIT :limit",
+                                select()));
+    }
+
+    @Test(timeout = 10000)
+    public void parallelCountFallsBackToCallerConnectionWithoutSparePermit() throws Exception {
+        StubDataSource dataSource = dataSource();
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+                .foundRowsStrategy(FoundRowsStrategy.COUNT_QUERY)
+                .connectionPermits(1);
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            factory.executor(executor);
+            Future<ResultList<Integer>> future = executor.submit(
+                    () -> template(factory, select()).executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt(1)));
+            assertEquals(Integer.valueOf(42), future.get(5, TimeUnit.SECONDS).getFoundRows());
+            assertEquals(1, dataSource.openConnections.get() + factory.getConnectionPermits().availablePermits());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void parallelCountRunsConcurrentlyWithConnectionPermits() throws Exception {
+        CountDownLatch countStarted = new CountDownLatch(1);
+        AtomicBoolean concurrent = new AtomicBoolean();
+        StubDataSource dataSource = new StubDataSource().rows(sql -> {
+            if (sql.startsWith("SELECT COUNT(*)")) {
+                countStarted.countDown();
+                return new StubDataSource.Rows("COUNT(*)").row(42);
+            }
+            try {
+                concurrent.set(countStarted.await(5, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return new StubDataSource.Rows("id", "id").row(1, 1);
+        });
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+                .foundRowsStrategy(FoundRowsStrategy.COUNT_QUERY)
+                .connectionPermits(2);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            factory.executor(executor);
+            ResultList<Integer> list = template(factory, select())
+                    .executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt(1));
+            assertEquals(Integer.valueOf(42), list.getFoundRows());
+            assertTrue("count query must run while the main query is executing", concurrent.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void parallelCountRunsOnCallerConnectionWhenExecutorIsBusy() throws Exception {
+        StubDataSource dataSource = dataSource();
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+                .foundRowsStrategy(FoundRowsStrategy.COUNT_QUERY);
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            factory.executor(executor);
+            Future<ResultList<Integer>> future = executor.submit(
+                    () -> template(factory, select()).executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt(1)));
+            assertEquals(Integer.valueOf(42), future.get(5, TimeUnit.SECONDS).getFoundRows());
+            assertEquals(2, dataSource.executions.size());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
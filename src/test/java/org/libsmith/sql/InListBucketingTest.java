@@ -0,0 +1,48 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class InListBucketingTest {
+    private final StubDataSource dataSource = new StubDataSource();
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+            .inListBucketing(InListBucketing.NULL);
+
+    private void execute(String query) throws Exception {
+        factory.template(query).parameter("ids", Arrays.asList(1, 2, 3)).executeQuery();
+    }
+
+    @Test
+    public void bucketSizeIsNextPowerOfTwo() {
+        assertEquals(0, InListBucketing.bucketSize(0));
+        assertEquals(1, InListBucketing.bucketSize(1));
+        assertEquals(2, InListBucketing.bucketSize(2));
+        assertEquals(4, InListBucketing.bucketSize(3));
+        assertEquals(8, InListBucketing.bucketSize(5));
+        assertEquals(Integer.MAX_VALUE, InListBucketing.bucketSize(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void padsInListWithNull() throws Exception {
+        execute("DELETE FROM t WHERE id IN (:ids)");
+        assertEquals("DELETE FROM t WHERE id IN (?, ?, ?, ?)", dataSource.statements().get(0));
+        assertEquals(Arrays.asList(1, 2, 3, null), dataSource.executions.get(0).getParameters());
+    }
+
+    @Test
+    public void padsNotInListWithLastValue() throws Exception {
+        execute("DELETE FROM t WHERE id NOT in( :ids)");
+        assertEquals("DELETE FROM t WHERE id NOT in( ?, ?, ?, ?)", dataSource.statements().get(0));
+        assertEquals(Arrays.asList(1, 2, 3, 3), dataSource.executions.get(0).getParameters());
+    }
+
+    @Test
+    public void doesNotPadOtherLists() throws Exception {
+        execute("INSERT INTO t (a, b, c) VALUES (:ids)");
+        assertEquals("INSERT INTO t (a, b, c) VALUES (?, ?, ?)", dataSource.statements().get(0));
+        assertEquals(Arrays.asList(1, 2, 3), dataSource.executions.get(0).getParameters());
+    }
+}
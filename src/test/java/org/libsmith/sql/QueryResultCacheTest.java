@@ -0,0 +1,186 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryResultCacheTest {
+    private static final SQLTemplate.Mapper<Integer> ID_MAPPER = rs -> rs.getInt("id");
+
+    private final StubDataSource dataSource = new StubDataSource().rows(new StubDataSource.Rows("id").row(1)
+                                                                                                    .row(2)
+                                                                                                    .row(3));
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(dataSource)
+            .resultCache(1, TimeUnit.MINUTES, 1000);
+
+    private SQLTemplate select() {
+        return factory.template("SELECT id FROM t WHERE a = :a").parameter("a", 1).cacheResult();
+    }
+
+    @Test
+    public void servesRepeatedQueryFromCache() throws Exception {
+        assertEquals(Arrays.asList(1, 2, 3), select().executeQuery(ID_MAPPER));
+        assertEquals(Arrays.asList(1, 2, 3), select().executeQuery(ID_MAPPER));
+        assertEquals(1, dataSource.executions.size());
+        assertEquals(1, factory.getResultCache().getHitCount());
+    }
+
+    @Test
+    public void keyIncludesParameters() throws Exception {
+        select().executeQuery(ID_MAPPER);
+        select().parameter("a", 2).executeQuery(ID_MAPPER);
+        assertEquals(2, dataSource.executions.size());
+    }
+
+    @Test
+    public void keyIncludesMaxRows() throws Exception {
+        assertEquals(Arrays.asList(1), select().maxRows(1).executeQuery(ID_MAPPER));
+        assertEquals(Arrays.asList(1, 2, 3), select().executeQuery(ID_MAPPER));
+        assertEquals(Arrays.asList(1, 2), select().maxRows(2).executeQuery(ID_MAPPER));
+        assertEquals(Arrays.asList(1, 2, 3), select().maxRows(0).executeQuery(ID_MAPPER));
+        assertEquals(3, dataSource.executions.size());
+    }
+
+    @Test
+    public void keyIncludesMapper() throws Exception {
+        select().executeQuery(ID_MAPPER);
+        select().executeQuery((SQLTemplate.Mapper<Integer>) rs -> -rs.getInt("id"));
+        assertEquals(2, dataSource.executions.size());
+    }
+
+    @Test
+    public void writeThroughFactoryInvalidatesReadTables() throws Exception {
+        select().executeQuery(ID_MAPPER);
+        factory.template("UPDATE t SET a = 2").executeQuery();
+        select().executeQuery(ID_MAPPER);
+        assertEquals(3, dataSource.executions.size());
+    }
+
+    @Test
+    public void transactionalSessionInvalidatesOnCommit() throws Exception {
+        select().executeQuery(ID_MAPPER);
+        try (SQLSession session = factory.openSession(true)) {
+            session.execute("DELETE FROM t WHERE a = 1");
+            select().executeQuery(ID_MAPPER);
+            assertEquals(2, dataSource.executions.size());
+            session.commit();
+        }
+        select().executeQuery(ID_MAPPER);
+        assertEquals(3, dataSource.executions.size());
+    }
+
+    @Test
+    public void rolledBackSessionDoesNotInvalidate() throws Exception {
+        select().executeQuery(ID_MAPPER);
+        try (SQLSession session = factory.openSession(true)) {
+            session.execute("DELETE FROM t WHERE a = 1");
+            session.rollback();
+        }
+        select().executeQuery(ID_MAPPER);
+        assertEquals(2, dataSource.executions.size());
+    }
+
+    @Test
+    public void resultReadBeforeInvalidationIsNotCached() {
+        QueryResultCache cache = new QueryResultCache(1, TimeUnit.MINUTES, 100);
+        QueryKey key = new QueryKey(SQLFragment.Impl.of("SELECT * FROM t"), null);
+        QueryResultCache.Stamp stamp = cache.stamp(Arrays.asList("t"));
+        cache.invalidate("T");
+        cache.put(key, "stale", stamp);
+        assertEquals(null, cache.get(key));
+
+        cache.put(key, "fresh", cache.stamp(Arrays.asList("t")));
+        assertEquals("fresh", cache.get(key));
+    }
+
+    @Test
+    public void primitiveListHitsAreIndependentCopies() throws Exception {
+        IntResultList first = select().executeQueryForInts();
+        first.set(0, 100);
+        IntResultList second = select().executeQueryForInts();
+        second.addInt(4);
+        assertEquals(Arrays.asList(1, 2, 3), select().executeQueryForInts());
+        assertEquals(1, dataSource.executions.size());
+    }
+
+    @Test
+    public void primitiveListTypesDoNotShareEntries() throws Exception {
+        select().executeQueryForInts();
+        assertEquals(Arrays.asList(1L, 2L, 3L), select().executeQueryForLongs());
+        assertEquals(2, dataSource.executions.size());
+    }
+
+    @Test
+    public void arbitraryAggregatorsAreNotCached() throws Exception {
+        assertEquals(Arrays.asList(1, 2, 3), select().executeQuery(new IdAggregator("id")));
+        assertEquals(Arrays.asList(1, 2, 3), select().executeQuery(new IdAggregator(1)));
+        assertEquals(2, dataSource.executions.size());
+    }
+
+    private static class IdAggregator extends SQLTemplate.ResultListKeyAggregator<Integer> {
+        IdAggregator(Object ... keyColumns) {
+            super(keyColumns);
+        }
+
+        @Override
+        protected Integer processRow(@Nonnull ExtendedResultSet resultSet, @Nullable Integer currentRow)
+                throws SQLException {
+            return resultSet.getInt("id");
+        }
+    }
+
+    @Test
+    public void tablesAreParsedFromQuery() {
+        assertEquals(tags("t", "u"), QueryResultCache.readTables("SELECT * FROM `db`.`t` JOIN u ON u.id = t.id"));
+        assertEquals(tags("t"), QueryResultCache.writtenTables("INSERT INTO t (a) VALUES (1)"));
+    }
+
+    @Test
+    public void readTablesIncludeCommaSeparatedList() {
+        assertEquals(tags("a", "b", "c"),
+                     QueryResultCache.readTables("SELECT * FROM a, b AS y, `db`.c z WHERE a.id = y.id"));
+        assertEquals(tags("a", "b", "c"),
+                     QueryResultCache.readTables("SELECT * FROM a x USE INDEX (i), (SELECT id FROM b) y, c "
+                                                 + "WHERE x.name = 'FROM d'"));
+    }
+
+    @Test
+    public void writtenTablesIncludeMultiTableDelete() {
+        assertEquals(tags("t", "u"), QueryResultCache.writtenTables("DELETE t FROM t JOIN u ON u.id = t.id"));
+        assertEquals(tags("t", "u"), QueryResultCache.writtenTables("DELETE t.* FROM t, u WHERE u.id = t.id"));
+        assertEquals(tags("t", "u"), QueryResultCache.writtenTables("DELETE FROM t USING t JOIN u ON u.id = t.id"));
+        assertEquals(tags("t"), QueryResultCache.writtenTables("DELETE FROM t WHERE id IN (SELECT id FROM u)"));
+    }
+
+    @Test
+    public void writtenTablesIncludeTruncateAndMultiTableUpdate() {
+        assertEquals(tags("t"), QueryResultCache.writtenTables("TRUNCATE TABLE t"));
+        assertEquals(tags("t"), QueryResultCache.writtenTables("TRUNCATE `db`.`t`"));
+        assertEquals(tags("a", "b"), QueryResultCache.writtenTables("UPDATE a, b SET a.x = b.x WHERE a.id = b.id"));
+        assertEquals(tags("a", "b"), QueryResultCache.writtenTables("UPDATE LOW_PRIORITY a JOIN b ON a.id = b.id "
+                                                                    + "SET a.x = (SELECT MAX(x) FROM c)"));
+        assertEquals(tags("t"), QueryResultCache.writtenTables("INSERT IGNORE t SELECT * FROM u"));
+    }
+
+    @Test
+    public void writeToSecondListedTableInvalidates() throws Exception {
+        SQLTemplate select = factory.template("SELECT id FROM a, b WHERE a.id = b.id").cacheResult();
+        select.executeQuery(ID_MAPPER);
+        factory.template("DELETE b FROM b JOIN c ON c.id = b.id").executeQuery();
+        select.executeQuery(ID_MAPPER);
+        factory.template("TRUNCATE TABLE a").executeQuery();
+        select.executeQuery(ID_MAPPER);
+        assertEquals(5, dataSource.executions.size());
+    }
+
+    private static HashSet<String> tags(String ... tables) {
+        return new HashSet<>(Arrays.asList(tables));
+    }
+}
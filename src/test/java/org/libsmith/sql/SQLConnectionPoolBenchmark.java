@@ -0,0 +1,116 @@
+package org.libsmith.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стоимость выдачи и возврата соединения {@link SQLConnectionPool} по сравнению с открытием соединения
+ * непулированного {@link javax.sql.DataSource}. Открытие соединения тестовым драйвером занимает
+ * {@code connectMicros} — порядок установки TCP соединения и аутентификации с локальной СУБД.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SQLConnectionPoolBenchmark {
+    @Param({ "100", "1000" })
+    public long connectMicros;
+
+    private DataSource dataSource;
+    private SQLConnectionPool pool;
+
+    @Setup
+    public void setUp() {
+        dataSource = new DriverDataSource(TimeUnit.MICROSECONDS.toNanos(connectMicros));
+        pool = new SQLConnectionPool(dataSource, 8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Connection unpooled() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        return connection;
+    }
+
+    @Benchmark
+    public Connection borrowAndReturn() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        return connection;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Connection borrowAndReturnContended() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        return connection;
+    }
+
+    /**
+     * Источник, открывающий новое соединение за {@code connectNanos}; в отличие от {@link StubDataSource}
+     * не записывает вызовы, чтобы не влиять на измерения
+     */
+    private static class DriverDataSource extends SQLTemplate.AbstractDataSource {
+        private final long connectNanos;
+
+        private DriverDataSource(long connectNanos) {
+            this.connectNanos = connectNanos;
+        }
+
+        @Override
+        public Connection getConnection() {
+            LockSupport.parkNanos(connectNanos);
+            boolean[] closed = { false };
+            return (Connection) Proxy.newProxyInstance(
+                    DriverDataSource.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getAutoCommit":
+                                return true;
+                            case "isValid":
+                                return !closed[0];
+                            case "isClosed":
+                                return closed[0];
+                            case "close":
+                                closed[0] = true;
+                                return null;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SQLConnectionPoolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SQLConnectionPoolTest {
+    private final StubDataSource dataSource = new StubDataSource();
+    private final SQLConnectionPool pool = new SQLConnectionPool(dataSource, 2);
+
+    @Test
+    public void returnedConnectionIsReused() throws Exception {
+        pool.getConnection().close();
+        pool.getConnection().close();
+
+        assertEquals(1, dataSource.openConnections.get());
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(2, pool.getBorrowCount());
+    }
+
+    @Test
+    public void releaseRestoresIsolationAndCatalog() throws Exception {
+        try (Connection connection = pool.getConnection()) {
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            connection.setCatalog("other");
+        }
+
+        assertTrue(dataSource.connectionCalls.contains(
+                "setTransactionIsolation(" + Connection.TRANSACTION_REPEATABLE_READ + ")"));
+        assertEquals("setCatalog(null)", dataSource.connectionCalls.get(dataSource.connectionCalls.size() - 2));
+        assertEquals("clearWarnings()", dataSource.connectionCalls.get(dataSource.connectionCalls.size() - 1));
+    }
+
+    @Test
+    public void releaseRestoresReadOnlyForNextBorrower() throws Exception {
+        try (Connection connection = pool.getConnection()) {
+            connection.setReadOnly(true);
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertFalse(connection.isReadOnly());
+        }
+        assertEquals(1, dataSource.openConnections.get());
+    }
+
+    @Test
+    public void releaseRestoresSchemaAndHoldability() throws Exception {
+        try (Connection connection = pool.getConnection()) {
+            connection.setSchema("other");
+            connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
+        }
+
+        assertTrue(dataSource.connectionCalls.contains("setSchema(null)"));
+        assertTrue(dataSource.connectionCalls.contains("setHoldability(0)"));
+    }
+
+    @Test
+    public void releaseClosesStatementsLeftOpen() throws Exception {
+        PreparedStatement open;
+        PreparedStatement closed;
+        try (Connection connection = pool.getConnection()) {
+            open = connection.prepareStatement("SELECT 1");
+            closed = connection.prepareStatement("SELECT 2");
+            closed.close();
+            assertFalse(open.isClosed());
+        }
+        assertTrue(open.isClosed());
+        assertTrue(closed.isClosed());
+    }
+
+    @Test
+    public void releaseWithoutChangesOnlyClearsWarnings() throws Exception {
+        pool.getConnection().close();
+
+        assertFalse(dataSource.connectionCalls.stream().anyMatch(call -> call.startsWith("set")));
+        assertTrue(dataSource.connectionCalls.contains("clearWarnings()"));
+    }
+
+    @Test
+    public void releaseRollsBackOpenTransaction() throws Exception {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+        }
+
+        int rollback = dataSource.connectionCalls.indexOf("rollback()");
+        assertTrue(rollback >= 0);
+        assertTrue(dataSource.connectionCalls.lastIndexOf("setAutoCommit(true)") > rollback);
+    }
+}
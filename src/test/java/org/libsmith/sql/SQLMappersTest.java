@@ -0,0 +1,237 @@
+package org.libsmith.sql;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SQLMappersTest {
+    public enum Status {
+        ACTIVE, BLOCKED
+    }
+
+    public enum Level implements SQLValue<Integer> {
+        LOW(1), HIGH(9);
+
+        private final int value;
+
+        Level(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public @Nonnull Integer getSQLValueEntity() {
+            return value;
+        }
+    }
+
+    public static class User {
+        private int userId;
+        private String name;
+        private Status status;
+        private Level level;
+        private LocalDate birthDate;
+        private LocalDateTime createdAt;
+        private UUID token;
+        private boolean admin;
+
+        public void setUserId(int userId) {
+            this.userId = userId;
+        }
+
+        public User setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public void setLevel(Level level) {
+            this.level = level;
+        }
+
+        public void setBirthDate(LocalDate birthDate) {
+            this.birthDate = birthDate;
+        }
+
+        public void setCreatedAt(LocalDateTime createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public void setToken(UUID token) {
+            this.token = token;
+        }
+
+        public void setAdmin(boolean admin) {
+            this.admin = admin;
+        }
+    }
+
+    public static class Holder {
+        public void setItems(List<String> items)
+        { }
+    }
+
+    private static class HiddenBean {
+        private String name;
+        private String value;
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setValue(List<String> value) {
+            this.value = "list";
+        }
+
+        public void setValue(String value) {
+            this.value = "string:" + value;
+        }
+
+        public void setValue(Object value) {
+            this.value = "object";
+        }
+    }
+
+    private static final UUID TOKEN = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    private static ExtendedResultSet resultSet() throws Exception {
+        StubDataSource.Rows rows = new StubDataSource.Rows("user_id", "NAME", "status", "level", "birth_date",
+                                                           "created_at", "token", "admin", "unmapped")
+                .row(7, "bob", "BLOCKED", 9, Date.valueOf("1990-05-17"), Timestamp.valueOf("2020-01-02 03:04:05"),
+                     TOKEN.toString(), true, "x")
+                .row(8, null, null, null, null, null, null, null, null);
+        return new ExtendedResultSet(StubDataSource.resultSet(rows, null));
+    }
+
+    @Test
+    public void beanMapperConvertsEnumsAndTemporalTypes() throws Exception {
+        ExtendedResultSet resultSet = resultSet();
+        SQLTemplate.Mapper<User> mapper = SQLMappers.beanMapper(User.class);
+        resultSet.next();
+        User user = mapper.map(resultSet);
+        assertEquals(7, user.userId);
+        assertEquals("bob", user.name);
+        assertEquals(Status.BLOCKED, user.status);
+        assertEquals(Level.HIGH, user.level);
+        assertEquals(LocalDate.of(1990, 5, 17), user.birthDate);
+        assertEquals(LocalDateTime.of(2020, 1, 2, 3, 4, 5), user.createdAt);
+        assertEquals(TOKEN, user.token);
+        assertEquals(true, user.admin);
+
+        resultSet.next();
+        user = mapper.map(resultSet);
+        assertEquals(8, user.userId);
+        assertNull(user.name);
+        assertNull(user.status);
+        assertNull(user.level);
+        assertNull(user.birthDate);
+        assertNull(user.token);
+        assertEquals(false, user.admin);
+    }
+
+    @Test
+    public void beanMapperRejectsUnsupportedPropertyType() throws Exception {
+        ExtendedResultSet resultSet = new ExtendedResultSet(StubDataSource.resultSet(
+                new StubDataSource.Rows("items").row("a,b"), null));
+        resultSet.next();
+        try {
+            SQLMappers.beanMapper(Holder.class).map(resultSet);
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+            assertEquals(true, ex.getMessage().contains("java.util.List"));
+        }
+    }
+
+    @Test
+    public void beanMapperSupportsNonPublicBeanAndPicksSupportedOverload() throws Exception {
+        ExtendedResultSet resultSet = new ExtendedResultSet(StubDataSource.resultSet(
+                new StubDataSource.Rows("name", "value").row("bob", "x"), null));
+        resultSet.next();
+        HiddenBean bean = SQLMappers.beanMapper(HiddenBean.class).map(resultSet);
+        assertEquals("bob", bean.name);
+        assertEquals("string:x", bean.value);
+    }
+
+    @Test
+    public void recordMapperPassesColumnsToCanonicalConstructor() throws Exception {
+        Class<?> recordType = compileRecord("UserRecord", "public record UserRecord(int userId, String name, Status status, long missing) { }");
+        ExtendedResultSet resultSet = resultSet();
+        resultSet.next();
+        Object user = SQLMappers.recordMapper(recordType).map(resultSet);
+        assertEquals(7, recordType.getMethod("userId").invoke(user));
+        assertEquals("bob", recordType.getMethod("name").invoke(user));
+        assertEquals(Status.BLOCKED, recordType.getMethod("status").invoke(user));
+        assertEquals(0L, recordType.getMethod("missing").invoke(user));
+
+        resultSet.next();
+        user = SQLMappers.recordMapper(recordType).map(resultSet);
+        assertEquals(8, recordType.getMethod("userId").invoke(user));
+        assertNull(recordType.getMethod("name").invoke(user));
+        assertNull(recordType.getMethod("status").invoke(user));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordMapperRejectsNonRecord() {
+        assumeRecordsSupported();
+        SQLMappers.recordMapper(User.class);
+    }
+
+    private static void assumeRecordsSupported() {
+        try {
+            Class.class.getMethod("isRecord");
+        }
+        catch (NoSuchMethodException ex) {
+            Assume.assumeNoException("Records are not supported by this runtime", ex);
+        }
+    }
+
+    /**
+     * Исходники собираются под Java 8, поэтому record компилируется во время теста, если это позволяет runtime
+     */
+    private static Class<?> compileRecord(String name, String source) throws Exception {
+        assumeRecordsSupported();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        Path directory = Files.createTempDirectory("records");
+        Path file = directory.resolve("org/libsmith/sql/" + name + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, ("package org.libsmith.sql;\nimport org.libsmith.sql.SQLMappersTest.Status;\n" + source)
+                .getBytes(StandardCharsets.UTF_8));
+        int result = compiler.run(null, null, null, "-classpath", System.getProperty("java.class.path"),
+                                  "-d", directory.toString(), file.toString());
+        assertEquals(0, result);
+        ClassLoader loader = new URLClassLoader(new URL[] { directory.toUri().toURL() },
+                                                SQLMappersTest.class.getClassLoader());
+        return loader.loadClass("org.libsmith.sql." + name);
+    }
+
+    @Test
+    public void rowToArrayKeepsColumnOrder() throws Exception {
+        ExtendedResultSet resultSet = resultSet();
+        resultSet.next();
+        Object[] row = SQLMappers.ROW_TO_ARRAY.map(resultSet);
+        assertEquals(Arrays.asList(7, "bob", "BLOCKED"), Arrays.asList(row).subList(0, 3));
+    }
+}
@@ -0,0 +1,27 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SQLTemplateFactoryTest {
+    @Test
+    public void templatesOfOneDataSourceShareDefaultFactory() throws Exception {
+        StubDataSource dataSource = new StubDataSource().rows(new StubDataSource.Rows("id").row(1));
+        PreparedTemplate first = new PreparedTemplate(CompiledTemplate.compile("SELECT id FROM t WHERE id = :id"), dataSource);
+        PreparedTemplate second = new PreparedTemplate(CompiledTemplate.compile("SELECT id FROM t"), dataSource);
+        PreparedTemplate other = new PreparedTemplate(CompiledTemplate.compile("SELECT id FROM t"), new StubDataSource());
+
+        assertSame(first.getFactory(), second.getFactory());
+        assertNotSame(first.getFactory(), other.getFactory());
+        assertSame(dataSource, second.getDataSource());
+
+        ResultList<Integer> ids = first.bind().parameter("id", 1).executeQuery((SQLTemplate.Mapper<Integer>) rs -> rs.getInt("id"));
+        assertEquals(Arrays.asList(1), ids);
+        assertEquals(Arrays.asList("SELECT id FROM t WHERE id = ?"), dataSource.statements());
+    }
+}
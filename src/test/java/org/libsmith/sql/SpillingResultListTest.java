@@ -0,0 +1,95 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SpillingResultListTest {
+    @Test
+    public void spillsRowsOverHeapLimit() {
+        try (SpillingResultList<Object[]> list = new SpillingResultList<>(SpillingResultList.OBJECT_ARRAY_CODEC,
+                                                                          10, Long.MAX_VALUE)) {
+            for (int i = 0; i < 10000; i++) {
+                list.add(new Object[] { i, "row " + i, i % 3 == 0 ? null : (long) i * i });
+            }
+            assertEquals(10000, list.size());
+            assertEquals(9990, list.getSpilledSize());
+            for (int i = 0; i < 10000; i += 97) {
+                assertArrayEquals(new Object[] { i, "row " + i, i % 3 == 0 ? null : (long) i * i }, list.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void spillsRowsOverHeapBytes() {
+        try (SpillingResultList<Object[]> list = new SpillingResultList<>(SpillingResultList.OBJECT_ARRAY_CODEC,
+                                                                          Integer.MAX_VALUE, 1000)) {
+            for (int i = 0; i < 100; i++) {
+                list.add(new Object[] { "value " + i });
+            }
+            assertEquals(true, list.getSpilledSize() > 0);
+            assertArrayEquals(new Object[] { "value 99" }, list.get(99));
+        }
+    }
+
+    @Test
+    public void objectArrayCodecRoundTripsSupportedTypes() {
+        Object[] row = {
+                null, 1, 2L, 3.5d, 4.5f, (short) 5, (byte) 6, true, "seven", new BigDecimal("8.90"),
+                new byte[] { 1, 2 }, Timestamp.valueOf("2020-01-02 03:04:05.123456789"),
+                java.sql.Date.valueOf("2020-01-02"), java.sql.Time.valueOf("03:04:05"),
+                new BigInteger("18446744073709551615"), LocalDate.of(2020, 1, 2), LocalTime.of(3, 4, 5, 6),
+                LocalDateTime.of(2020, 1, 2, 3, 4, 5, 6), Instant.ofEpochSecond(1577934245L, 7),
+                OffsetDateTime.of(2020, 1, 2, 3, 4, 5, 6, ZoneOffset.ofHours(3)),
+                UUID.fromString("123e4567-e89b-12d3-a456-426614174000"), Currency.getInstance("EUR")
+        };
+        try (SpillingResultList<Object[]> list = new SpillingResultList<>(SpillingResultList.OBJECT_ARRAY_CODEC,
+                                                                          0, 0)) {
+            list.add(row);
+            assertEquals(1, list.getSpilledSize());
+            Object[] read = list.get(0);
+            assertArrayEquals((byte[]) row[10], (byte[]) read[10]);
+            read[10] = row[10];
+            assertEquals(Arrays.asList(row), Arrays.asList(read));
+        }
+    }
+
+    @Test
+    public void useAfterCloseFails() {
+        SpillingResultList<Object[]> list = new SpillingResultList<>(SpillingResultList.OBJECT_ARRAY_CODEC, 1, 0);
+        list.add(new Object[] { 1 });
+        list.add(new Object[] { 2 });
+        list.get(1);
+        list.close();
+        list.close();
+        try {
+            list.add(new Object[] { 3 });
+            fail();
+        }
+        catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            list.get(0);
+            fail();
+        }
+        catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementCacheTest {
+    private static final SQLTemplate.Mapper<Integer> ID_MAPPER = rs -> rs.getInt("id");
+
+    private final StubDataSource dataSource = new StubDataSource().rows(new StubDataSource.Rows("id").row(1));
+    private final SQLConnectionPool pool = new SQLConnectionPool(dataSource, 2);
+    private final SQLTemplateFactory factory = new SQLTemplateFactory(pool).statementCache(8);
+
+    @Test
+    public void statementsArePreparedOnLogicalConnection() throws Exception {
+        factory.template("SELECT id FROM t").executeQuery(ID_MAPPER);
+        factory.template("SELECT id FROM t").executeQuery(ID_MAPPER);
+
+        StatementCache cache = factory.getStatementCache();
+        assertEquals(2, dataSource.executions.size());
+        assertEquals("statement closed by the pool on release must be prepared again", 2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void statementsAreReusedWithinOneConnection() throws Exception {
+        try (SQLSession session = factory.openSession()) {
+            session.template("SELECT id FROM t").executeQuery(ID_MAPPER);
+            session.template("SELECT id FROM t").executeQuery(ID_MAPPER);
+            assertEquals(1, session.getStatementCache().getHitCount());
+        }
+    }
+
+    @Test
+    public void closedConnectionsArePurgedOnRelease() throws SQLException {
+        StatementCache cache = new StatementCache(8);
+        Connection first = dataSource.getConnection();
+        cache.prepare(first, "SELECT 1", false).close();
+        assertEquals(1, cache.getConnectionCount());
+
+        first.close();
+        Connection second = dataSource.getConnection();
+        cache.prepare(second, "SELECT 1", false).close();
+        second.close();
+        cache.prepare(second, "SELECT 2", false).close();
+        assertEquals(0, cache.getConnectionCount());
+    }
+}
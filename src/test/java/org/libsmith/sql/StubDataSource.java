@@ -0,0 +1,385 @@
+package org.libsmith.sql;
+
+import javax.annotation.Nonnull;
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Источник соединений для тестов: запоминает выполненные запросы и их параметры,
+ * а на запросы выборки отвечает заранее заданными строками
+ */
+class StubDataSource implements DataSource {
+    static final class Rows {
+        private final String[] labels;
+        private final int[] types;
+        private final boolean[] signed;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        Rows(String ... labels) {
+            this.labels = labels;
+            this.types = new int[labels.length];
+            this.signed = new boolean[labels.length];
+            Arrays.fill(types, Types.OTHER);
+            Arrays.fill(signed, true);
+        }
+
+        Rows type(int column, int sqlType, boolean signed) {
+            this.types[column - 1] = sqlType;
+            this.signed[column - 1] = signed;
+            return this;
+        }
+
+        Rows row(Object ... values) {
+            rows.add(values);
+            return this;
+        }
+    }
+
+    static final class Execution {
+        final String sql;
+        final Map<Integer, Object> parameters = new TreeMap<>();
+        Integer maxRows;
+
+        private Execution(String sql) {
+            this.sql = sql;
+        }
+
+        private Execution copy() {
+            Execution copy = new Execution(sql);
+            copy.parameters.putAll(parameters);
+            copy.maxRows = maxRows;
+            return copy;
+        }
+
+        List<Object> getParameters() {
+            return new ArrayList<>(parameters.values());
+        }
+    }
+
+    final List<Execution> executions = new CopyOnWriteArrayList<>();
+    final List<String> connectionCalls = new CopyOnWriteArrayList<>();
+    /**
+     * Количество строк в каждом выполненном {@code executeBatch}; сами строки попадают в {@link #executions}
+     */
+    final List<Integer> batches = new CopyOnWriteArrayList<>();
+    /**
+     * Порядковый номер строки среди всех добавленных в batch, на которой {@code executeBatch} завершается
+     * {@link BatchUpdateException} с количествами для предшествующих строк этого batch'а; -1 — без ошибок
+     */
+    volatile int failingBatchRow = -1;
+    private final AtomicInteger batchRows = new AtomicInteger();
+    final AtomicInteger openConnections = new AtomicInteger();
+    private volatile Function<String, Rows> rows = sql -> new Rows();
+
+    StubDataSource rows(@Nonnull Function<String, Rows> rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    StubDataSource rows(@Nonnull Rows rows) {
+        return rows(sql -> rows);
+    }
+
+    List<String> statements() {
+        List<String> statements = new ArrayList<>();
+        for (Execution execution : executions) {
+            statements.add(execution.sql);
+        }
+        return statements;
+    }
+
+    @Override
+    public Connection getConnection() {
+        openConnections.incrementAndGet();
+        boolean[] closed = { false };
+        boolean[] readOnly = { false };
+        return proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return preparedStatement((String) args[0]);
+                case "close":
+                    if (!closed[0]) {
+                        closed[0] = true;
+                        openConnections.decrementAndGet();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed[0];
+                case "getAutoCommit":
+                    return !connectionCalls.contains("setAutoCommit(false)")
+                           || connectionCalls.lastIndexOf("setAutoCommit(true)")
+                              > connectionCalls.lastIndexOf("setAutoCommit(false)");
+                case "getTransactionIsolation":
+                    return Connection.TRANSACTION_REPEATABLE_READ;
+                case "isReadOnly":
+                    return readOnly[0];
+                case "setReadOnly":
+                    readOnly[0] = (Boolean) args[0];
+                    connectionCalls.add("setReadOnly(" + args[0] + ")");
+                    return null;
+                case "isValid":
+                    return !closed[0];
+                default:
+                    connectionCalls.add(method.getName() + (args == null ? "()" : "(" + args[0] + ")"));
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) {
+        return getConnection();
+    }
+
+    private PreparedStatement preparedStatement(String sql) {
+        Execution execution = new Execution(sql);
+        boolean[] closed = { false };
+        List<Execution> batch = new ArrayList<>();
+        return proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                && !name.equals("setFetchSize") && !name.equals("setMaxRows")) {
+                execution.parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return null;
+            }
+            switch (name) {
+                case "setMaxRows":
+                    execution.maxRows = (Integer) args[0];
+                    return null;
+                case "executeQuery":
+                    executions.add(execution);
+                    return resultSet(rows.apply(sql), execution.maxRows);
+                case "executeUpdate":
+                    executions.add(execution);
+                    return 1;
+                case "execute":
+                    executions.add(execution);
+                    return false;
+                case "addBatch":
+                    batch.add(execution.copy());
+                    return null;
+                case "clearBatch":
+                    batch.clear();
+                    return null;
+                case "executeBatch":
+                    return executeBatch(batch);
+                case "getGeneratedKeys":
+                    return resultSet(new Rows("GENERATED_KEY"), null);
+                case "getUpdateCount":
+                    return -1;
+                case "close":
+                    closed[0] = true;
+                    return null;
+                case "isClosed":
+                    return closed[0];
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private int[] executeBatch(List<Execution> batch) throws BatchUpdateException {
+        batches.add(batch.size());
+        int[] updateCounts = new int[batch.size()];
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batchRows.getAndIncrement() == failingBatchRow) {
+                    throw new BatchUpdateException("Stub batch failure", Arrays.copyOf(updateCounts, i));
+                }
+                executions.add(batch.get(i));
+                updateCounts[i] = 1;
+            }
+            return updateCounts;
+        }
+        finally {
+            batch.clear();
+        }
+    }
+
+    static ResultSet resultSet(@Nonnull Rows rows, Integer maxRows) {
+        int limit = maxRows == null || maxRows == 0 ? rows.rows.size() : Math.min(maxRows, rows.rows.size());
+        int[] position = { -1 };
+        boolean[] wasNull = { false };
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return rows.labels.length;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return rows.labels[(Integer) args[0] - 1];
+                case "getColumnType":
+                    return rows.types[(Integer) args[0] - 1];
+                case "isSigned":
+                    return rows.signed[(Integer) args[0] - 1];
+                default:
+                    return defaultValue(method);
+            }
+        });
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    return ++position[0] < limit;
+                case "getMetaData":
+                    return metaData;
+                case "wasNull":
+                    return wasNull[0];
+                case "findColumn":
+                    return column(rows, (String) args[0]);
+                default:
+            }
+            if (name.startsWith("get") && args != null && args.length >= 1
+                && (args[0] instanceof Integer || args[0] instanceof String)) {
+                int column = args[0] instanceof Integer ? (Integer) args[0] : column(rows, (String) args[0]);
+                Object value = rows.rows.get(position[0])[column - 1];
+                wasNull[0] = value == null;
+                return convert(value, args.length > 1 && args[1] instanceof Class ? (Class<?>) args[1]
+                                                                                   : method.getReturnType());
+            }
+            return defaultValue(method);
+        });
+    }
+
+    private static int column(Rows rows, String label) throws SQLException {
+        for (int i = 0; i < rows.labels.length; i++) {
+            if (rows.labels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("Column '" + label + "' not found");
+    }
+
+    private static Object convert(Object value, Class<?> type) throws SQLException {
+        if (value == null) {
+            return type.isPrimitive() ? defaultValue(type) : null;
+        }
+        if (type == Object.class || type.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (type == int.class || type == Integer.class) {
+                return number.intValue();
+            }
+            if (type == long.class || type == Long.class) {
+                return number.longValue();
+            }
+            if (type == double.class || type == Double.class) {
+                return number.doubleValue();
+            }
+            if (type == float.class || type == Float.class) {
+                return number.floatValue();
+            }
+            if (type == short.class || type == Short.class) {
+                return number.shortValue();
+            }
+            if (type == byte.class || type == Byte.class) {
+                return number.byteValue();
+            }
+            if (type == boolean.class || type == Boolean.class) {
+                return number.intValue() != 0;
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(number.toString());
+            }
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (type == boolean.class && value instanceof Boolean) {
+            return value;
+        }
+        throw new SQLException("Cannot convert " + value.getClass().getName() + " to " + type.getName());
+    }
+
+    private static Object defaultValue(Method method) {
+        return defaultValue(method.getReturnType());
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class || type == short.class || type == byte.class) {
+            return type == int.class ? 0 : type == short.class ? (Object) (short) 0 : (Object) (byte) 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StubDataSource.class.getClassLoader(), new Class<?>[] { type },
+                                          (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                }
+            }
+            try {
+                return handler.invoke(proxy, method, args);
+            }
+            catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        });
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out)
+    { }
+
+    @Override
+    public void setLoginTimeout(int seconds)
+    { }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getGlobal();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException("Not a wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package org.libsmith.sql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class StubDataSourceTest {
+    @Test
+    public void recordsStatementsAndReturnsRows() throws Exception {
+        StubDataSource dataSource = new StubDataSource().rows(new StubDataSource.Rows("id", "name").row(1, "a")
+                                                                                                  .row(2, "b"));
+        SQLTemplateFactory factory = new SQLTemplateFactory(dataSource);
+        ResultList<String> names = factory.template("SELECT id, name FROM t WHERE id IN (:ids)")
+                                          .parameter("ids", Arrays.asList(1, 2))
+                                          .executeQuery((SQLTemplate.Mapper<String>) rs -> rs.getString("name"));
+        assertEquals(Arrays.asList("a", "b"), names);
+        assertEquals(Arrays.asList("SELECT id, name FROM t WHERE id IN (?, ?)"), dataSource.statements());
+        assertEquals(Arrays.asList(1, 2), dataSource.executions.get(0).getParameters());
+        assertEquals(0, dataSource.openConnections.get());
+    }
+}